@@ -0,0 +1,147 @@
+package org.habittracker.bench;
+
+import org.habittracker.db.CompletionRollup;
+import org.habittracker.db.DatabaseConnection;
+import org.habittracker.db.SchemaMigrator;
+import org.habittracker.services.PasswordHasher;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * Generated H2 data sets for the benchmarks.
+ *
+ * Habits are spread round-robin over the generated users (user1, user2, ...),
+ * so with users=1 every habit belongs to user 1. Every user's password is
+ * PASSWORD, stored as one hash made with the configured cost.
+ *
+ * Each combination of sizes gets its own file database under bench.dir
+ * (default target/bench-db). Generation is slow for the large sets, so a
+ * finished database is marked in bench_info and reused by later runs.
+ * Points the app at the database through system properties, which AppConfig
+ * reads ahead of config.properties; call prepare() before touching any DAO.
+ */
+public final class BenchmarkDatabase {
+    // Share of days a habit is completed on; the pattern is deterministic so runs are comparable
+    private static final int COMPLETION_PERCENT = 60;
+    private static final int HABITS_PER_INSERT = 500;
+    // Part of the file name; bump when the generated data changes so old files are not reused
+    private static final int FORMAT = 2;
+
+    public static final String PASSWORD = "password";
+
+    public record Dataset(int habits, int years, int users, LocalDate today) {
+    }
+
+    private BenchmarkDatabase() {
+    }
+
+    public static Dataset prepare(int habits, int years, int users) {
+        String name = "v" + FORMAT + "-habits-" + habits + "-years-" + years + "-users-" + users;
+        File dir = new File(System.getProperty("bench.dir", "target/bench-db")).getAbsoluteFile();
+        String url = "jdbc:h2:file:" + new File(dir, name).getPath() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+
+        System.setProperty("DB_URL", url);
+        System.setProperty("DB_USER", "sa");
+        System.setProperty("DB_PASSWORD", "");
+        System.setProperty("GOOGLE_CALENDAR_SYNC_ENABLED", "false");
+
+        try {
+            LocalDate today = readAnchor(url);
+            if (today != null) {
+                System.out.println("✅ Reusing benchmark database " + name);
+                return new Dataset(habits, years, users, today);
+            }
+
+            // Leftovers of an interrupted generation
+            new File(dir, name + ".mv.db").delete();
+            new File(dir, name + ".trace.db").delete();
+
+            today = LocalDate.now();
+            SchemaMigrator.migrate();
+            generate(habits, years, users, today);
+            System.out.println("✅ Generated benchmark database " + name);
+            return new Dataset(habits, years, users, today);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not prepare benchmark database " + name, e);
+        }
+    }
+
+    // Date the data set was generated relative to, or null if there is no finished data set
+    private static LocalDate readAnchor(String url) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url + ";IFEXISTS=TRUE", "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("""
+                     SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'bench_info'
+                     """)) {
+            rs.next();
+            if (rs.getInt(1) == 0) return null;
+            try (ResultSet info = stmt.executeQuery("SELECT anchor_date FROM bench_info")) {
+                return info.next() ? info.getDate(1).toLocalDate() : null;
+            }
+        } catch (SQLException e) {
+            // IFEXISTS: the database file has not been created yet
+            if (e.getErrorCode() == 90146) return null;
+            throw e;
+        }
+    }
+
+    private static void generate(int habits, int years, int users, LocalDate today) throws SQLException {
+        int days = years * 365;
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            // SYSTEM_RANGE's column is upper case "X", which DATABASE_TO_LOWER would otherwise miss
+            try (PreparedStatement insert = conn.prepareStatement("""
+                    INSERT INTO users (username, password) SELECT 'user' || "X", ? FROM SYSTEM_RANGE(1, ?)
+                    """)) {
+                insert.setString(1, PasswordHasher.getInstance().hash(PASSWORD));
+                insert.setInt(2, users);
+                insert.executeUpdate();
+            }
+
+            try (PreparedStatement insert = conn.prepareStatement("""
+                    INSERT INTO habit (user_id, name) SELECT MOD("X" - 1, ?) + 1, 'Habit ' || "X" FROM SYSTEM_RANGE(1, ?)
+                    """)) {
+                insert.setInt(1, users);
+                insert.setInt(2, habits);
+                insert.executeUpdate();
+            }
+
+            // Written in slices of habits so no single statement holds tens of millions of rows
+            String completions = """
+                    INSERT INTO habit_completion (user_id, habit_id, completion_date, completed)
+                    SELECT MOD(h."X" - 1, ?) + 1, h."X", DATEADD(DAY, -d."X", CAST(? AS DATE)), TRUE
+                    FROM SYSTEM_RANGE(?, ?) h CROSS JOIN SYSTEM_RANGE(0, ?) d
+                    WHERE MOD(h."X" * 7919 + d."X" * d."X" * 31 + d."X" / 7, 100) < ?
+                    """;
+            try (PreparedStatement insert = conn.prepareStatement(completions)) {
+                for (int first = 1; first <= habits; first += HABITS_PER_INSERT) {
+                    insert.setInt(1, users);
+                    insert.setDate(2, java.sql.Date.valueOf(today));
+                    insert.setInt(3, first);
+                    insert.setInt(4, Math.min(habits, first + HABITS_PER_INSERT - 1));
+                    insert.setInt(5, days - 1);
+                    insert.setInt(6, COMPLETION_PERCENT);
+                    insert.executeUpdate();
+                }
+            }
+
+            // Completions were inserted in bulk, bypassing the write buffer that maintains the rollups
+            for (int user = 1; user <= Math.min(users, habits); user++) {
+                CompletionRollup.rebuild(conn, user);
+            }
+
+            stmt.execute("CREATE TABLE bench_info (anchor_date DATE NOT NULL)");
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO bench_info VALUES (?)")) {
+                insert.setDate(1, java.sql.Date.valueOf(today));
+                insert.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.habittracker.bench;
+
+import org.habittracker.db.HabitDAO;
+import org.habittracker.models.Habit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The calls behind the dashboard and analytics screens, against generated
+ * habit histories, as user 1. completionIndex=false measures the plain SQL
+ * paths; users > 1 spreads the habits over that many accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class HabitDAOBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int habits;
+
+    @Param({"2"})
+    public int years;
+
+    @Param({"1"})
+    public int users;
+
+    @Param({"true", "false"})
+    public String completionIndex;
+
+    private HabitDAO dao;
+    private List<Habit> habitList;
+    private LocalDate today;
+
+    @Setup
+    public void setUp() {
+        // Read by HabitDAO's static initializer, so it must be set before the class loads
+        System.setProperty("COMPLETION_INDEX_ENABLED", completionIndex);
+        today = BenchmarkDatabase.prepare(habits, years, users).today();
+        dao = new HabitDAO(1);
+        habitList = dao.getAllHabits();
+        // Loads the index (when enabled) outside the measured region
+        dao.getCompletionStatusForDay(today);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dao.flushPendingCompletions();
+    }
+
+    // Writes go after the generated history so reruns measure the same data
+    @Benchmark
+    public void markCompleted() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Habit habit = habitList.get(random.nextInt(habitList.size()));
+        dao.markCompleted(habit, today.plusDays(1 + random.nextInt(365)), random.nextBoolean());
+    }
+
+    @Benchmark
+    public Map<Integer, Boolean> getCompletionStatusForDay() {
+        return dao.getCompletionStatusForDay(today.minusDays(ThreadLocalRandom.current().nextInt(years * 365)));
+    }
+
+    // What the dashboard loads per month: the 6x7 grid plus every habit's streak
+    @Benchmark
+    public Object loadMonth() {
+        LocalDate month = today.minusMonths(ThreadLocalRandom.current().nextInt(years * 12)).withDayOfMonth(1);
+        LocalDate gridStart = month.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        return new Object[] {
+                dao.getCompletionStatusForRange(gridStart, gridStart.plusDays(41)),
+                dao.getStreaks()
+        };
+    }
+
+    @Benchmark
+    public Map<LocalDate, Integer> getDailyCompletionCounts() {
+        return dao.getDailyCompletionCounts(today.minusDays(29), today);
+    }
+
+    @Benchmark
+    public Map<String, Integer> getHabitCompletionCounts() {
+        return dao.getHabitCompletionCounts(today.minusDays(29), today);
+    }
+
+    // The analytics "Last 12 Months" range: eleven whole months from the rollup plus the current one
+    @Benchmark
+    public Map<String, Integer> getHabitCompletionCountsLast12Months() {
+        return dao.getHabitCompletionCounts(today.withDayOfMonth(1).minusMonths(11), today);
+    }
+}
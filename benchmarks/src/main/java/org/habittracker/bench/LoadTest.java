@@ -0,0 +1,442 @@
+package org.habittracker.bench;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.habittracker.db.CompletionWriteBuffer;
+import org.habittracker.db.ConnectionPool;
+import org.habittracker.db.DatabaseConnection;
+import org.habittracker.db.HabitDAO;
+import org.habittracker.db.UserRepository;
+import org.habittracker.models.Habit;
+import org.habittracker.models.HabitStreak;
+import org.habittracker.models.User;
+import org.habittracker.services.AuthService;
+import org.habittracker.services.LoginRateLimiter;
+import org.habittracker.services.PasswordHasher;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of the DAO layer: many simulated users, each on its own virtual
+ * thread, running a mix of what the desktop app does (login, month view,
+ * completion toggle, analytics) against a shared HabitDAO/UserRepository/
+ * connection pool setup, as a server would.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar org.habittracker.bench.LoadTest users=2000 duration=120
+ *
+ * Options (name=value, defaults in brackets):
+ *   users      simulated users, one account each [1000]
+ *   habits     habits per account [5]
+ *   years      completion history of the generated H2 data [1]
+ *   think      mean milliseconds between one user's operations [1000]
+ *   mix        operation weights [login:2,month:50,toggle:38,analytics:10]
+ *   warmup     seconds before measuring [10]
+ *   duration   seconds measured [60]
+ *   report     seconds between progress lines [5]
+ *   maxP99     fail if any operation's p99 exceeds this many ms; 0 checks errors only [0]
+ *   out        directory for the .hgrm latency distributions [target/load-test]
+ *
+ * By default it runs against a generated H2 database (see BenchmarkDatabase).
+ * Setting -DDB_URL (with DB_USER/DB_PASSWORD) targets that database instead,
+ * e.g. a local MySQL; accounts user1..userN and their habits are created
+ * there if missing, so never point it at real data. Other app settings, such
+ * as DB_POOL_MAX_SIZE, are passed the same way.
+ *
+ * Each user issues operations on a fixed random schedule (exponential gaps
+ * averaging think ms) and latency is measured from when an operation was due,
+ * not when it started, so a stalled system shows up in the percentiles
+ * instead of silently slowing the users down (coordinated omission).
+ *
+ * Users only ever touch their own account, so each knows what its data must
+ * look like. Month views and analytics are checked against the toggles the
+ * user made, and at the end every toggle is read back from the table after
+ * the write buffer is flushed. Any mismatch, failed login or pool timeout
+ * fails the run, as does maxP99, and the exit code is 1 so it can gate a build.
+ */
+public final class LoadTest {
+
+    enum Operation {
+        LOGIN, MONTH, TOGGLE, ANALYTICS
+    }
+
+    // Latencies are recorded in microseconds, up to ten minutes
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+    // Toggles and month views reach back this far
+    private static final int DAYS_BACK = 60;
+    private static final int MAX_PRINTED_ERRORS = 10;
+
+    private final int users;
+    private final int habitsPerUser;
+    private final long thinkNanos;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final AtomicInteger printedErrors = new AtomicInteger();
+    private final AuthService authService;
+    private volatile boolean running = true;
+
+    private LoadTest(int users, int habitsPerUser, long thinkMillis, Map<Operation, Integer> mix) {
+        this.users = users;
+        this.habitsPerUser = habitsPerUser;
+        this.thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkMillis);
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(MAX_LATENCY_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+        // Limits far above anything a load test reaches; LoginRateLimiterBenchmark covers the limiter
+        LoginRateLimiter unlimited = new LoginRateLimiter(1, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 1, 0, System::nanoTime);
+        this.authService = new AuthService(PasswordHasher.getInstance(), unlimited);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int users = intOption(options, "users", 1000);
+        int habits = intOption(options, "habits", 5);
+        int years = intOption(options, "years", 1);
+        int think = intOption(options, "think", 1000);
+        int warmup = intOption(options, "warmup", 10);
+        int duration = intOption(options, "duration", 60);
+        int report = Math.max(1, intOption(options, "report", 5));
+        int maxP99 = intOption(options, "maxP99", 0);
+        Map<Operation, Integer> mix = parseMix(stringOption(options, "mix", "login:2,month:50,toggle:38,analytics:10"));
+        File out = new File(stringOption(options, "out", "target/load-test"));
+        if (!options.isEmpty()) throw new IllegalArgumentException("Unknown options: " + options.keySet());
+        if (users < 1 || habits < 1 || think < 1 || duration < 1)
+            throw new IllegalArgumentException("users, habits, think and duration must be positive");
+
+        System.setProperty("GOOGLE_CALENDAR_SYNC_ENABLED", "false");
+        if (System.getProperty("DB_URL") == null) {
+            BenchmarkDatabase.prepare(users * habits, years, users);
+        }
+
+        LoadTest test = new LoadTest(users, habits, think, mix);
+        List<VirtualUser> virtualUsers = test.createUsers();
+        boolean passed = test.run(virtualUsers, warmup, duration, report, maxP99, out);
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Accounts user1..userN, created with their habits if the database does not have them yet
+    private List<VirtualUser> createUsers() {
+        long started = System.nanoTime();
+        UserRepository userRepository = new UserRepository();
+        String hash = null;
+        List<VirtualUser> virtualUsers = new ArrayList<>(users);
+        for (int number = 1; number <= users; number++) {
+            String username = "user" + number;
+            User user = userRepository.findUserByUsername(username);
+            if (user == null) {
+                if (hash == null) hash = PasswordHasher.getInstance().hash(BenchmarkDatabase.PASSWORD);
+                user = userRepository.saveUser(new User(username, hash));
+                if (user == null) throw new IllegalStateException("Could not create " + username);
+            }
+            HabitDAO dao = new HabitDAO(user.getId());
+            List<Habit> habits = dao.getAllHabits();
+            for (int i = habits.size(); i < habitsPerUser; i++) {
+                if (!dao.addHabit(new Habit("Habit " + (i + 1))))
+                    throw new IllegalStateException("Could not add a habit for " + username);
+            }
+            if (habits.size() != habitsPerUser) habits = dao.getAllHabits();
+            virtualUsers.add(new VirtualUser(username, user.getId(), dao, List.copyOf(habits)));
+        }
+        System.out.printf("✅ %d users ready in %d ms%n", users, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return virtualUsers;
+    }
+
+    private boolean run(List<VirtualUser> virtualUsers, int warmup, int duration, int report, int maxP99, File out)
+            throws InterruptedException, SQLException {
+        Map<Operation, Histogram> totals = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) totals.put(operation, new Histogram(MAX_LATENCY_MICROS, 3));
+        ConnectionPool.PoolStats poolBefore = null;
+
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        virtualUsers.forEach(threads::execute);
+        System.out.printf("📊 %d users, warming up for %d s, then measuring for %d s%n", users, warmup, duration);
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+        long previous = start;
+        while (previous < end) {
+            long due = Math.min(end, previous + TimeUnit.SECONDS.toNanos(report));
+            if (poolBefore == null && due > measureFrom) due = Math.max(previous + 1, measureFrom);
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, due - System.nanoTime()));
+            long now = System.nanoTime();
+            boolean measuring = previous >= measureFrom;
+
+            StringBuilder line = new StringBuilder();
+            long count = 0;
+            for (Operation operation : Operation.values()) {
+                Histogram interval = recorders.get(operation).getIntervalHistogram();
+                if (measuring) totals.get(operation).add(interval);
+                count += interval.getTotalCount();
+                if (interval.getTotalCount() > 0) {
+                    line.append(String.format("  %s p99 %.1f ms", operation.name().toLowerCase(),
+                            interval.getValueAtPercentile(99) / 1000.0));
+                }
+            }
+            System.out.printf("[%4d s%s] %7.0f ops/s%s%n", TimeUnit.NANOSECONDS.toSeconds(now - start),
+                    measuring ? "" : " warmup", count / ((now - previous) / 1e9), line);
+
+            if (poolBefore == null && now >= measureFrom) poolBefore = DatabaseConnection.getPoolStats();
+            previous = now;
+        }
+        ConnectionPool.PoolStats poolAfter = DatabaseConnection.getPoolStats();
+
+        running = false;
+        threads.shutdown();
+        if (!threads.awaitTermination(1, TimeUnit.MINUTES)) System.err.println("⚠️ Some users were still busy after a minute");
+
+        long flushStarted = System.nanoTime();
+        CompletionWriteBuffer.getInstance().flush();
+        long flushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - flushStarted);
+        long lostWrites = 0;
+        for (VirtualUser user : virtualUsers) lostWrites += user.verifyPersisted();
+
+        return report(totals, (end - measureFrom) / 1e9, poolBefore, poolAfter, flushMillis, lostWrites, maxP99, out);
+    }
+
+    private boolean report(Map<Operation, Histogram> totals, double seconds, ConnectionPool.PoolStats before,
+                           ConnectionPool.PoolStats after, long flushMillis, long lostWrites, int maxP99, File out) {
+        System.out.println();
+        System.out.println("operation        count     ops/s    p50 ms    p90 ms    p99 ms  p99.9 ms    max ms   errors");
+        boolean passed = true;
+        long failures = 0;
+        out.mkdirs();
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = totals.get(operation);
+            long operationErrors = errors.get(operation).sum();
+            failures += operationErrors;
+            if (histogram.getTotalCount() == 0 && operationErrors == 0) continue;
+            System.out.printf("%-12s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8d%n",
+                    operation.name().toLowerCase(), histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0, operationErrors);
+            if (maxP99 > 0 && histogram.getValueAtPercentile(99) > maxP99 * 1000L) {
+                System.out.printf("⚠️ %s p99 is above %d ms%n", operation.name().toLowerCase(), maxP99);
+                passed = false;
+            }
+            // Percentile distribution in HdrHistogram's text format, for plotting runs against each other
+            try (PrintStream file = new PrintStream(new File(out, operation.name().toLowerCase() + ".hgrm"))) {
+                histogram.outputPercentileDistribution(file, 1000.0);
+            } catch (FileNotFoundException e) {
+                System.err.println("⚠️ Could not write latency distribution: " + e.getMessage());
+            }
+        }
+
+        long timeouts = after.timeouts() - (before != null ? before.timeouts() : 0);
+        System.out.printf("%n📊 Pool: %d borrows, average wait %d µs, max wait %d µs, %d timeouts, %d leaks%n",
+                after.borrows() - (before != null ? before.borrows() : 0), after.avgWaitMicros(),
+                after.maxWaitMicros(), timeouts, after.leaks());
+        System.out.printf("📊 Final flush of queued completions took %d ms; %d toggles lost%n", flushMillis, lostWrites);
+
+        if (failures > 0 || lostWrites > 0 || timeouts > 0) passed = false;
+        System.out.println(passed ? "✅ PASS" : "⚠️ FAIL");
+        return passed;
+    }
+
+    private void fail(Operation operation, String message) {
+        errors.get(operation).increment();
+        if (printedErrors.incrementAndGet() <= MAX_PRINTED_ERRORS) {
+            System.err.println("⚠️ " + operation.name().toLowerCase() + ": " + message);
+        }
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (roll < cumulativeWeights[i]) return operations[i];
+        }
+        return operations[operations.length - 1];
+    }
+
+    private final class VirtualUser implements Runnable {
+        private final String username;
+        private final int userId;
+        private final HabitDAO dao;
+        private final List<Habit> habits;
+        // What this user last set, by habit and day; nobody else writes to their account
+        private final Map<Habit, Map<LocalDate, Boolean>> expected = new HashMap<>();
+
+        VirtualUser(String username, int userId, HabitDAO dao, List<Habit> habits) {
+            this.username = username;
+            this.userId = userId;
+            this.dao = dao;
+            this.habits = habits;
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            // Users start spread over one think time rather than all at once
+            long due = System.nanoTime() + (long) (random.nextDouble() * thinkNanos);
+            while (running) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                if (!running) return;
+
+                Operation operation = pick(random);
+                try {
+                    execute(operation, random);
+                } catch (RuntimeException e) {
+                    fail(operation, username + " " + e);
+                }
+                recorders.get(operation).recordValue(Math.min(MAX_LATENCY_MICROS, (System.nanoTime() - due) / 1000));
+                due += (long) (-Math.log(1 - random.nextDouble()) * thinkNanos);
+            }
+        }
+
+        private void execute(Operation operation, ThreadLocalRandom random) {
+            LocalDate today = LocalDate.now();
+            switch (operation) {
+                case LOGIN -> {
+                    AuthService.Authentication login = authService.verifyCredentials(username, BenchmarkDatabase.PASSWORD);
+                    if (login.result() != AuthService.LoginResult.SUCCESS || login.user().getId() != userId)
+                        fail(operation, username + " could not log in: " + login.result());
+                }
+                case MONTH -> {
+                    YearMonth month = YearMonth.from(today.minusDays(random.nextInt(DAYS_BACK)));
+                    LocalDate first = month.atDay(1);
+                    LocalDate last = month.atEndOfMonth();
+                    if (dao.getAllHabits().size() != habits.size())
+                        fail(operation, username + " does not see all " + habits.size() + " habits");
+                    Map<LocalDate, Map<Integer, Boolean>> status = dao.getCompletionStatusForRange(first, last);
+                    expected.forEach((habit, days) -> days.forEach((day, completed) -> {
+                        if (day.isBefore(first) || day.isAfter(last)) return;
+                        boolean shown = status.getOrDefault(day, Map.of()).getOrDefault(habit.getId(), false);
+                        if (shown != completed)
+                            fail(operation, username + " sees " + habit.getName() + " on " + day + " as " + shown);
+                    }));
+                }
+                case TOGGLE -> {
+                    Habit habit = habits.get(random.nextInt(habits.size()));
+                    LocalDate day = today.minusDays(random.nextInt(DAYS_BACK));
+                    boolean completed = random.nextBoolean();
+                    dao.markCompleted(habit, day, completed);
+                    expected.computeIfAbsent(habit, h -> new HashMap<>()).put(day, completed);
+                }
+                case ANALYTICS -> {
+                    LocalDate start = today.minusDays(29);
+                    Map<LocalDate, Integer> daily = dao.getDailyCompletionCounts(start, today);
+                    // The user's own toggles bound each day's count from both sides
+                    for (LocalDate day = start; !day.isAfter(today); day = day.plusDays(1)) {
+                        int known = 0;
+                        int knownDone = 0;
+                        for (Map<LocalDate, Boolean> days : expected.values()) {
+                            Boolean completed = days.get(day);
+                            if (completed != null) {
+                                known++;
+                                if (completed) knownDone++;
+                            }
+                        }
+                        int count = daily.getOrDefault(day, 0);
+                        if (count < knownDone || count > knownDone + habits.size() - known)
+                            fail(operation, username + " has " + count + " completions on " + day);
+                    }
+                    Map<Integer, HabitStreak> streaks = dao.getStreaks();
+                    if (streaks.size() != habits.size())
+                        fail(operation, username + " has streaks for " + streaks.size() + " of " + habits.size() + " habits");
+                }
+            }
+        }
+
+        // Number of this user's toggles the table does not hold, read directly after the final flush
+        long verifyPersisted() throws SQLException {
+            if (expected.isEmpty()) return 0;
+            Map<Integer, Map<LocalDate, Boolean>> stored = new HashMap<>();
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("""
+                         SELECT habit_id, completion_date, completed FROM habit_completion
+                         WHERE user_id = ? AND completion_date >= ?
+                         """)) {
+                stmt.setInt(1, userId);
+                stmt.setDate(2, java.sql.Date.valueOf(LocalDate.now().minusDays(DAYS_BACK + 1)));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        stored.computeIfAbsent(rs.getInt(1), id -> new HashMap<>())
+                                .put(rs.getDate(2).toLocalDate(), rs.getBoolean(3));
+                    }
+                }
+            }
+            long lost = 0;
+            for (Map.Entry<Habit, Map<LocalDate, Boolean>> habit : expected.entrySet()) {
+                Map<LocalDate, Boolean> days = stored.getOrDefault(habit.getKey().getId(), Map.of());
+                for (Map.Entry<LocalDate, Boolean> day : habit.getValue().entrySet()) {
+                    // An unchecked day may be stored as a false row or no row at all
+                    if (days.getOrDefault(day.getKey(), false) != day.getValue()) {
+                        lost++;
+                        if (printedErrors.incrementAndGet() <= MAX_PRINTED_ERRORS) {
+                            System.err.println("⚠️ " + username + " " + habit.getKey().getName() + " on "
+                                    + day.getKey() + " was not saved as " + day.getValue());
+                        }
+                    }
+                }
+            }
+            return lost;
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Options are name=value, not " + arg);
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    // Removes the option, so whatever is left at the end was misspelled
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.remove(name);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    private static String stringOption(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.split(":");
+            if (pair.length != 2) throw new IllegalArgumentException("mix entries are operation:weight, not " + part);
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) throw new IllegalArgumentException("Negative weight in mix: " + part);
+            if (weight > 0) weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), weight);
+        }
+        if (weights.isEmpty()) throw new IllegalArgumentException("mix has no operation with a positive weight");
+        return weights;
+    }
+}
@@ -0,0 +1,92 @@
+package org.habittracker.bench;
+
+import org.habittracker.db.LocalHabitStore;
+import org.habittracker.models.Habit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a local store file and loading the dashboard's month from it.
+ *
+ * The file is written once per trial under bench.dir (default
+ * target/bench-db) and compacted by reopening it, which is the state a
+ * store is in after normal use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalStoreBenchmark {
+    private static final int COMPLETION_PERCENT = 60;
+
+    @Param({"10", "100"})
+    public int habits;
+
+    @Param({"1", "10"})
+    public int years;
+
+    private Path file;
+    private LocalHabitStore store;
+    private LocalDate monthStart;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = new File(System.getProperty("bench.dir", "target/bench-db")).getAbsoluteFile();
+        file = dir.toPath().resolve("local-habits-" + habits + "-years-" + years + ".htdl");
+        Files.deleteIfExists(file);
+
+        LocalDate today = LocalDate.now();
+        SplittableRandom random = new SplittableRandom(42);
+        try (LocalHabitStore writer = LocalHabitStore.open(file)) {
+            for (int h = 1; h <= habits; h++) {
+                Habit habit = new Habit("Habit " + h);
+                writer.addHabit(habit);
+                for (int d = 0; d < years * 365; d++) {
+                    if (random.nextInt(100) < COMPLETION_PERCENT) writer.markCompleted(habit, today.minusDays(d), true);
+                }
+            }
+        }
+        store = LocalHabitStore.open(file);
+        monthStart = today.withDayOfMonth(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int openStore() throws IOException {
+        store.close();
+        store = LocalHabitStore.open(file);
+        return store.getAllHabits().size();
+    }
+
+    @Benchmark
+    public Map<LocalDate, Map<Integer, Boolean>> loadMonth() {
+        return store.getCompletionStatusForRange(monthStart, monthStart.plusMonths(1).minusDays(1));
+    }
+}
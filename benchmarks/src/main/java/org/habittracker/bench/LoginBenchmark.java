@@ -0,0 +1,59 @@
+package org.habittracker.bench;
+
+import org.habittracker.services.AuthService;
+import org.habittracker.services.LoginRateLimiter;
+import org.habittracker.services.PasswordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Username lookup and password check through AuthService, at the configured
+ * hash cost (see PasswordHashBenchmark for the hash alone). Unknown users are
+ * checked against a dummy hash, so both should take about as long. The rate
+ * limiter is configured out of the way; LoginRateLimiterBenchmark covers it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int users;
+
+    private AuthService authService;
+
+    @Setup
+    public void setUp() {
+        BenchmarkDatabase.prepare(10, 1, users);
+        // Limits far above anything a benchmark reaches, so every attempt is checked
+        LoginRateLimiter unlimited = new LoginRateLimiter(1, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 1, 0, System::nanoTime);
+        authService = new AuthService(PasswordHasher.getInstance(), unlimited);
+    }
+
+    @Benchmark
+    public boolean login() {
+        int user = 1 + ThreadLocalRandom.current().nextInt(users);
+        return authService.login("user" + user, BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public boolean loginUnknownUser() {
+        return authService.login("nobody" + ThreadLocalRandom.current().nextInt(users), BenchmarkDatabase.PASSWORD);
+    }
+}
@@ -0,0 +1,67 @@
+package org.habittracker.bench;
+
+import org.habittracker.services.LoginRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login attempts through the rate limiter from many threads at once, as in
+ * a credential-stuffing burst. Nearly every attempt is refused, which is the
+ * path that has to stay cheap; failures are recorded for each of them.
+ *
+ * spray: a different username per attempt; one user: every thread hammers
+ * the same slot, the worst case for compare-and-set contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LoginRateLimiterBenchmark {
+    private static final int NAMES = 1 << 16;
+
+    @Param({"1024", "4096", "65536"})
+    public int stripes;
+
+    private LoginRateLimiter limiter;
+    private String[] usernames;
+
+    @Setup
+    public void setUp() {
+        limiter = new LoginRateLimiter(stripes, 10, 5, 50, 100, 5, 15 * 60_000, 15 * 60_000, System::nanoTime);
+        usernames = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            usernames[i] = "user" + i;
+        }
+    }
+
+    @Benchmark
+    public LoginRateLimiter.Decision spray() {
+        String username = usernames[ThreadLocalRandom.current().nextInt(NAMES)];
+        LoginRateLimiter.Decision decision = limiter.tryAcquire(username);
+        if (decision == LoginRateLimiter.Decision.ALLOWED) limiter.recordFailure(username);
+        return decision;
+    }
+
+    @Benchmark
+    public LoginRateLimiter.Decision oneUser() {
+        LoginRateLimiter.Decision decision = limiter.tryAcquire("victim");
+        if (decision == LoginRateLimiter.Decision.ALLOWED) limiter.recordFailure("victim");
+        return decision;
+    }
+}
@@ -0,0 +1,67 @@
+package org.habittracker.bench;
+
+import org.habittracker.db.CompletionIndex;
+import org.habittracker.models.HabitStreak;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Toggle-then-read of one habit's streak in the in-memory index. The cost
+ * should stay flat as the history grows; completionPercent=100 makes every
+ * toggle split or rejoin one run that spans the whole history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreakBenchmark {
+    private static final int HABIT_ID = 1;
+
+    @Param({"1", "10", "50"})
+    public int years;
+
+    @Param({"60", "100"})
+    public int completionPercent;
+
+    private CompletionIndex index;
+    private LocalDate today;
+    private int days;
+
+    @Setup
+    public void setUp() {
+        index = new CompletionIndex();
+        index.putHabit(HABIT_ID, "Habit");
+        today = LocalDate.now();
+        days = years * 365;
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < days; i++) {
+            index.setCompleted(HABIT_ID, today.minusDays(i), random.nextInt(100) < completionPercent);
+        }
+    }
+
+    @Benchmark
+    public HabitStreak toggleAndReadStreak() {
+        LocalDate day = today.minusDays(ThreadLocalRandom.current().nextInt(days));
+        boolean completed = index.isCompleted(HABIT_ID, day);
+        index.setCompleted(HABIT_ID, day, !completed);
+        HabitStreak streak = index.getStreak(HABIT_ID, today);
+        index.setCompleted(HABIT_ID, day, completed);
+        return streak;
+    }
+}
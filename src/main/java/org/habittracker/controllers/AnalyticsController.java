@@ -2,26 +2,34 @@ package org.habittracker.controllers;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.chart.PieChart;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
 
-import javafx.stage.Stage;
-import org.habittracker.db.HabitDAO;
+import org.habittracker.db.AsyncHabitDAO;
+import org.habittracker.models.HabitStreak;
+import org.habittracker.utils.Activatable;
+import org.habittracker.utils.AppContext;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
-public class AnalyticsController {
+import static org.habittracker.utils.FxExecutor.thenOnFx;
+
+public class AnalyticsController implements Activatable {
 
     @FXML
     private LineChart<String, Number> lineChart;
@@ -32,23 +40,56 @@ public class AnalyticsController {
     @FXML
     private ComboBox<String> rangeSelector;
 
-    private HabitDAO habitDAO;
+    @FXML
+    private VBox streakBox;
+
+    private final AppContext context;
+    // Set on activation; the view may be preloaded before anyone logs in
+    private AsyncHabitDAO asyncDAO;
+    // Latest chart load; a new range selection cancels the previous one
+    private CompletableFuture<Void> pendingChartLoad;
+    // Bumped whenever a chart load is superseded; a result from an older generation is dropped
+    private int chartLoadGeneration;
 
     @FXML
     private Button backButton;
 
+    private static final int MONTHLY_POINTS_AFTER_DAYS = 92;
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MMM yyyy");
+
+    public AnalyticsController(AppContext context) {
+        this.context = context;
+    }
+
     @FXML
     public void initialize() {
-        habitDAO = new HabitDAO();
 
         // Default range → This Week
         rangeSelector.setValue("This Week");
-        updateCharts();
 
         // Listener for dropdown change
         rangeSelector.setOnAction(e -> updateCharts());
     }
 
+    // Charts are reloaded on every visit, since habits may have changed on the dashboard
+    @Override
+    public void onActivate() {
+        asyncDAO = context.getHabitDAO();
+        updateCharts();
+    }
+
+    @Override
+    public void onDeactivate() {
+        cancelChartLoad();
+    }
+
+    // Not interrupted: an interrupt inside JDBC can close the connection, or for H2 the database file
+    private void cancelChartLoad() {
+        chartLoadGeneration++;
+        if (pendingChartLoad != null)
+            pendingChartLoad.cancel(false);
+    }
+
     private void updateCharts() {
         String range = rangeSelector.getValue();
         LocalDate now = LocalDate.now();
@@ -68,36 +109,76 @@ public class AnalyticsController {
             case "Last 30 Days" -> {
                 start = now.minusDays(29);
             }
+            // Year ranges start on the 1st so the per-month rollups cover all but the current month
+            case "This Year" -> {
+                start = now.withDayOfYear(1);
+            }
+            case "Last 12 Months" -> {
+                start = now.withDayOfMonth(1).minusMonths(11);
+            }
             default -> start = now.minusDays(6); // fallback → last 7 days
         }
 
-        loadLineChart(start, end);
-        loadPieChart(start, end);
+        cancelChartLoad();
+        int generation = chartLoadGeneration;
+
+        LocalDate rangeStart = start;
+        pendingChartLoad = thenOnFx(asyncDAO.call(dao -> new ChartData(
+                dao.getDailyCompletionCounts(rangeStart, end),
+                dao.getHabitCompletionCounts(rangeStart, end),
+                dao.getStreaks())), data -> {
+            if (generation != chartLoadGeneration) return;
+            loadLineChart(rangeStart, end, data.dailyCounts());
+            loadPieChart(data.habitCounts());
+            loadStreaks(data.streaks());
+        });
     }
 
-    private void loadLineChart(LocalDate start, LocalDate end) {
-        lineChart.getData().clear();
+    private record ChartData(Map<LocalDate, Integer> dailyCounts, Map<String, Integer> habitCounts,
+                             Map<Integer, HabitStreak> streaks) {
+    }
 
-        Map<LocalDate, Integer> dailyCounts = habitDAO.getDailyCompletionCounts(start, end);
+    private void loadStreaks(Map<Integer, HabitStreak> streaks) {
+        streakBox.getChildren().clear();
+
+        streaks.values().stream()
+                .filter(s -> s.getHabitName() != null)
+                .sorted(Comparator.comparingInt(HabitStreak::getCurrentStreak).reversed()
+                        .thenComparing(HabitStreak::getHabitName))
+                .forEach(s -> streakBox.getChildren().add(new Label(String.format(
+                        "%s — current %d days, best %d · 7d %.0f%% · 30d %.0f%% · 365d %.0f%%",
+                        s.getHabitName(), s.getCurrentStreak(), s.getLongestStreak(),
+                        s.getLast7DaysRate() * 100, s.getLast30DaysRate() * 100, s.getLast365DaysRate() * 100))));
+    }
+
+    private void loadLineChart(LocalDate start, LocalDate end, Map<LocalDate, Integer> dailyCounts) {
+        lineChart.getData().clear();
 
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("Habits Completed");
 
-        LocalDate date = start;
-        while (!date.isAfter(end)) {
-            int count = dailyCounts.getOrDefault(date, 0);
-            series.getData().add(new XYChart.Data<>(date.toString(), count));
-            date = date.plusDays(1);
+        if (ChronoUnit.DAYS.between(start, end) >= MONTHLY_POINTS_AFTER_DAYS) {
+            // One point per month; hundreds of daily points would be unreadable and slow to lay out
+            Map<YearMonth, Integer> monthly = new TreeMap<>();
+            for (YearMonth month = YearMonth.from(start); !month.isAfter(YearMonth.from(end)); month = month.plusMonths(1))
+                monthly.put(month, 0);
+            dailyCounts.forEach((day, count) -> monthly.computeIfPresent(YearMonth.from(day), (m, total) -> total + count));
+            monthly.forEach((month, total) -> series.getData().add(new XYChart.Data<>(month.format(MONTH_FORMATTER), total)));
+        } else {
+            LocalDate date = start;
+            while (!date.isAfter(end)) {
+                int count = dailyCounts.getOrDefault(date, 0);
+                series.getData().add(new XYChart.Data<>(date.toString(), count));
+                date = date.plusDays(1);
+            }
         }
 
         lineChart.getData().add(series);
     }
 
-    private void loadPieChart(LocalDate start, LocalDate end) {
+    private void loadPieChart(Map<String, Integer> habitCounts) {
         pieChart.getData().clear();
 
-        Map<String, Integer> habitCounts = habitDAO.getHabitCompletionCounts(start, end);
-
         for (Map.Entry<String, Integer> entry : habitCounts.entrySet()) {
             PieChart.Data slice = new PieChart.Data(entry.getKey(), entry.getValue());
             pieChart.getData().add(slice);
@@ -107,18 +188,7 @@ public class AnalyticsController {
     @FXML
     private void handleBack(ActionEvent event) {
         try {
-            // Load the Dashboard FXML
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/habittracker/dashboard.fxml"));
-            Parent dashboardRoot = loader.load();
-
-            // Get the current stage
-            Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-
-            // Set the new scene
-            Scene scene = new Scene(dashboardRoot);
-            stage.setScene(scene);
-            stage.setTitle("Habit Tracker - Dashboard");
-            stage.show();
+            context.getNavigator().show("/habittracker/dashboard.fxml", "Habit Tracker - Dashboard");
         } catch (IOException e) {
             e.printStackTrace();
             System.out.println("Error loading dashboard.fxml");
@@ -0,0 +1,483 @@
+package org.habittracker.controllers;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.habittracker.db.HabitRepository;
+import org.habittracker.models.Habit;
+import org.habittracker.models.HabitStreak;
+import org.habittracker.services.ApiSessions;
+import org.habittracker.services.AuthService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JSON API of server mode, the headless counterpart of the JavaFX screens.
+ *
+ *   POST   /api/signup             {username, password}          -> 201 {token, userId}
+ *   POST   /api/login              {username, password}          -> {token, userId}
+ *   POST   /api/logout
+ *   GET    /api/habits                                           -> [{id, name}]
+ *   POST   /api/habits             {name}                        -> 201 {id, name}
+ *   PUT    /api/habits/{id}        {name}
+ *   DELETE /api/habits/{id}
+ *   GET    /api/completions?date=  or ?start=&end=               -> {habitId: completed} or {date: {...}}
+ *   PUT    /api/completions        {habitId, date, completed}
+ *   GET    /api/analytics/daily?start=&end=                      -> {date: completed habits}
+ *   GET    /api/analytics/habits?start=&end=                     -> {habit name: completed days}
+ *   GET    /api/analytics/streaks                                -> [{habitId, name, current, longest, ...}]
+ *   GET    /api/health
+ *
+ * Everything except signup, login and health needs "Authorization: Bearer
+ * <token>". Dates are ISO (2024-01-31) and ranges are inclusive. Each request
+ * runs on its own virtual thread (see ServerMain), so handlers simply block on
+ * the repository; password checks still go through the hasher's bounded pool.
+ */
+public class ApiController implements HttpHandler {
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    // Longest range a single request may ask for, about ten years
+    private static final int MAX_RANGE_DAYS = 3660;
+    // Completions can be set from the epoch up to tomorrow, which allows for clients in later time zones
+    private static final LocalDate FIRST_COMPLETION_DATE = LocalDate.of(1970, 1, 1);
+
+    private final AuthService authService;
+    private final ApiSessions sessions;
+    private final int maxOpenRepositories;
+    /*
+     * Each user's repository is opened on first use and shared by their requests, like AppContext does.
+     * Access order, so beyond maxOpenRepositories the least recently used idle ones are released.
+     * The lock only covers this bookkeeping: opening and releasing, which may read a whole local
+     * store or run queries, happen outside it, so one user's cold start does not hold up the others.
+     */
+    private final ReentrantLock repositoriesLock = new ReentrantLock();
+    private final LinkedHashMap<Integer, OpenRepository> repositories = new LinkedHashMap<>(16, 0.75f, true);
+    // Users whose released repository is still being closed; reopening waits for that
+    private final Map<Integer, CompletableFuture<Void>> closing = new HashMap<>();
+
+    private static final class OpenRepository {
+        // Completed by the request that opens it; the others wait on it
+        final CompletableFuture<HabitRepository> repository = new CompletableFuture<>();
+        // Requests currently using or waiting for it; it is only released when this is zero
+        int inUse;
+    }
+
+    // Ends a request with this status and message
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public ApiController(AuthService authService, ApiSessions sessions, int maxOpenRepositories) {
+        this.authService = authService;
+        this.sessions = sessions;
+        this.maxOpenRepositories = maxOpenRepositories;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (Exception e) {
+                // Failures from joined futures arrive wrapped
+                sendFailure(exchange, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        }
+    }
+
+    private static void sendFailure(HttpExchange exchange, Throwable failure) throws IOException {
+        if (failure instanceof ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } else if (failure instanceof DateTimeParseException || failure instanceof IllegalArgumentException) {
+            sendError(exchange, 400, failure.getMessage());
+        } else if (failure instanceof UnsupportedOperationException) {
+            sendError(exchange, 501, failure.getMessage());
+        } else if (AuthService.isSaturated(failure)) {
+            // The password hashing pool is full; the client should come back shortly
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            sendError(exchange, 503, "Server is busy, try again shortly");
+        } else {
+            failure.printStackTrace();
+            sendError(exchange, 500, "Internal server error");
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceFirst("^/api/?", "").split("/");
+        String resource = path[0];
+        String id = path.length > 1 ? path[1] : null;
+
+        switch (resource) {
+            case "health" -> send(exchange, 200, Map.of("status", "ok"));
+            case "signup" -> requireMethod(method, "POST", () -> signup(exchange));
+            case "login" -> requireMethod(method, "POST", () -> login(exchange));
+            case "logout" -> requireMethod(method, "POST", () -> {
+                sessions.remove(bearerToken(exchange));
+                send(exchange, 204, null);
+            });
+            case "habits" -> withRepository(authenticatedUser(exchange), repository -> habits(exchange, method, id, repository));
+            case "completions" -> withRepository(authenticatedUser(exchange), repository -> completions(exchange, method, repository));
+            case "analytics" -> requireMethod(method, "GET", () ->
+                    withRepository(authenticatedUser(exchange), repository -> analytics(exchange, id, repository)));
+            default -> throw new ApiException(404, "No such resource: " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    private interface RepositoryAction {
+        void run(HabitRepository repository) throws IOException;
+    }
+
+    private static void requireMethod(String method, String expected, Action action) throws IOException {
+        if (!method.equals(expected)) throw new ApiException(405, "Use " + expected);
+        action.run();
+    }
+
+    private void signup(HttpExchange exchange) throws IOException {
+        GenericJson body = readBody(exchange);
+        String username = requireString(body, "username");
+        var user = authService.createAccountAsync(username, requireString(body, "password")).join();
+        if (user == null) throw new ApiException(409, "Username is already taken");
+        send(exchange, 201, Map.of("token", sessions.create(user.getId()), "userId", user.getId()));
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        GenericJson body = readBody(exchange);
+        AuthService.Authentication authentication = authService.verifyCredentialsAsync(
+                requireString(body, "username"), requireString(body, "password")).join();
+        switch (authentication.result()) {
+            case SUCCESS -> {
+                int userId = authentication.user().getId();
+                send(exchange, 200, Map.of("token", sessions.create(userId), "userId", userId));
+            }
+            case INVALID_CREDENTIALS -> throw new ApiException(401, "Invalid username or password");
+            case RATE_LIMITED, LOCKED_OUT -> {
+                exchange.getResponseHeaders().set("Retry-After", "60");
+                throw new ApiException(429, "Too many login attempts");
+            }
+        }
+    }
+
+    private void habits(HttpExchange exchange, String method, String id, HabitRepository repository) throws IOException {
+        if (id == null) {
+            switch (method) {
+                case "GET" -> {
+                    List<Map<String, Object>> habits = new ArrayList<>();
+                    for (Habit habit : repository.getAllHabits()) habits.add(habitJson(habit));
+                    send(exchange, 200, habits);
+                }
+                case "POST" -> {
+                    Habit habit = new Habit(requireName(readBody(exchange)));
+                    if (!repository.addHabit(habit)) throw new ApiException(500, "Could not add habit");
+                    send(exchange, 201, habitJson(habit));
+                }
+                default -> throw new ApiException(405, "Use GET or POST");
+            }
+            return;
+        }
+
+        Habit habit = ownedHabit(repository, Integer.parseInt(id));
+        switch (method) {
+            case "PUT" -> {
+                if (!repository.updateHabit(habit, requireName(readBody(exchange))))
+                    throw new ApiException(500, "Could not rename habit");
+                send(exchange, 204, null);
+            }
+            case "DELETE" -> {
+                if (!repository.deleteHabit(habit)) throw new ApiException(500, "Could not delete habit");
+                send(exchange, 204, null);
+            }
+            default -> throw new ApiException(405, "Use PUT or DELETE");
+        }
+    }
+
+    private void completions(HttpExchange exchange, String method, HabitRepository repository) throws IOException {
+        switch (method) {
+            case "GET" -> {
+                Map<String, String> query = query(exchange);
+                if (query.containsKey("date")) {
+                    send(exchange, 200, stringKeys(repository.getCompletionStatusForDay(LocalDate.parse(query.get("date")))));
+                } else {
+                    LocalDate[] range = range(query);
+                    Map<String, Object> days = new LinkedHashMap<>();
+                    new TreeMap<>(repository.getCompletionStatusForRange(range[0], range[1]))
+                            .forEach((date, status) -> days.put(date.toString(), stringKeys(status)));
+                    send(exchange, 200, days);
+                }
+            }
+            case "PUT" -> {
+                GenericJson body = readBody(exchange);
+                Habit habit = ownedHabit(repository, requireInt(body, "habitId"));
+                Object completed = body.get("completed");
+                if (!(completed instanceof Boolean)) throw new ApiException(400, "completed must be true or false");
+                repository.markCompleted(habit, completionDate(requireString(body, "date")), (Boolean) completed);
+                send(exchange, 204, null);
+            }
+            default -> throw new ApiException(405, "Use GET or PUT");
+        }
+    }
+
+    private void analytics(HttpExchange exchange, String kind, HabitRepository repository) throws IOException {
+        if ("streaks".equals(kind)) {
+            List<Map<String, Object>> streaks = new ArrayList<>();
+            for (HabitStreak streak : repository.getStreaks().values()) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("habitId", streak.getHabitId());
+                json.put("name", streak.getHabitName());
+                json.put("current", streak.getCurrentStreak());
+                json.put("longest", streak.getLongestStreak());
+                json.put("last7DaysRate", streak.getLast7DaysRate());
+                json.put("last30DaysRate", streak.getLast30DaysRate());
+                json.put("last365DaysRate", streak.getLast365DaysRate());
+                streaks.add(json);
+            }
+            send(exchange, 200, streaks);
+            return;
+        }
+
+        LocalDate[] range = range(query(exchange));
+        switch (kind == null ? "" : kind) {
+            case "daily" -> send(exchange, 200, stringKeys(new TreeMap<>(repository.getDailyCompletionCounts(range[0], range[1]))));
+            case "habits" -> send(exchange, 200, stringKeys(repository.getHabitCompletionCounts(range[0], range[1])));
+            default -> throw new ApiException(404, "Analytics are daily, habits or streaks");
+        }
+    }
+
+    private void withRepository(int userId, RepositoryAction action) throws IOException {
+        OpenRepository open = acquire(userId);
+        try {
+            action.run(open.repository.join());
+        } finally {
+            release(open);
+        }
+    }
+
+    private OpenRepository acquire(int userId) {
+        OpenRepository open;
+        CompletableFuture<Void> previousClose = null;
+        boolean opener = false;
+        List<Integer> released;
+        repositoriesLock.lock();
+        try {
+            open = repositories.get(userId);
+            if (open == null) {
+                open = new OpenRepository();
+                repositories.put(userId, open);
+                previousClose = closing.get(userId);
+                opener = true;
+            }
+            open.inUse++;
+            released = removeIdleRepositories();
+        } finally {
+            repositoriesLock.unlock();
+        }
+        releaseAll(released);
+
+        if (opener) {
+            try {
+                if (previousClose != null) previousClose.join();
+                open.repository.complete(HabitRepository.forUser(userId));
+            } catch (RuntimeException e) {
+                open.repository.completeExceptionally(e);
+                // The next request tries again
+                repositoriesLock.lock();
+                try {
+                    repositories.remove(userId, open);
+                } finally {
+                    repositoriesLock.unlock();
+                }
+            }
+        }
+        return open;
+    }
+
+    private void release(OpenRepository open) {
+        List<Integer> released;
+        repositoriesLock.lock();
+        try {
+            open.inUse--;
+            released = removeIdleRepositories();
+        } finally {
+            repositoriesLock.unlock();
+        }
+        releaseAll(released);
+    }
+
+    // Repositories in use are skipped, so under a burst of users the map briefly holds more than the limit.
+    // Returns the users whose repositories were removed; call releaseAll() with them after unlocking.
+    private List<Integer> removeIdleRepositories() {
+        List<Integer> removed = new ArrayList<>();
+        Iterator<Map.Entry<Integer, OpenRepository>> eldest = repositories.entrySet().iterator();
+        while (repositories.size() > maxOpenRepositories && eldest.hasNext()) {
+            Map.Entry<Integer, OpenRepository> entry = eldest.next();
+            if (entry.getValue().inUse > 0) continue;
+            eldest.remove();
+            if (!closing.containsKey(entry.getKey())) {
+                closing.put(entry.getKey(), new CompletableFuture<>());
+                removed.add(entry.getKey());
+            }
+        }
+        return removed;
+    }
+
+    private void releaseAll(List<Integer> userIds) {
+        for (int userId : userIds) {
+            try {
+                HabitRepository.release(userId);
+            } finally {
+                CompletableFuture<Void> closed;
+                repositoriesLock.lock();
+                try {
+                    closed = closing.remove(userId);
+                } finally {
+                    repositoriesLock.unlock();
+                }
+                closed.complete(null);
+            }
+        }
+    }
+
+    // Also what keeps one user from touching another's habits by id
+    private static Habit ownedHabit(HabitRepository repository, int habitId) {
+        Habit habit = repository.findHabit(habitId);
+        if (habit == null) throw new ApiException(404, "No such habit: " + habitId);
+        return habit;
+    }
+
+    private int authenticatedUser(HttpExchange exchange) {
+        int userId = sessions.userId(bearerToken(exchange));
+        if (userId < 0) throw new ApiException(401, "Log in first");
+        return userId;
+    }
+
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : "";
+    }
+
+    // A far-off date would make the completion index allocate a bitset reaching out to it
+    private static LocalDate completionDate(String text) {
+        LocalDate date = LocalDate.parse(text);
+        LocalDate last = LocalDate.now().plusDays(1);
+        if (date.isBefore(FIRST_COMPLETION_DATE) || date.isAfter(last))
+            throw new ApiException(400, "date must be between " + FIRST_COMPLETION_DATE + " and " + last);
+        return date;
+    }
+
+    private static LocalDate[] range(Map<String, String> query) {
+        if (!query.containsKey("start") || !query.containsKey("end"))
+            throw new ApiException(400, "start and end dates are required");
+        LocalDate start = LocalDate.parse(query.get("start"));
+        LocalDate end = LocalDate.parse(query.get("end"));
+        long days = ChronoUnit.DAYS.between(start, end);
+        if (days < 0) throw new ApiException(400, "end is before start");
+        if (days >= MAX_RANGE_DAYS) throw new ApiException(400, "Ranges are limited to " + MAX_RANGE_DAYS + " days");
+        return new LocalDate[]{start, end};
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static GenericJson readBody(HttpExchange exchange) {
+        try {
+            GenericJson body = JSON_FACTORY.fromInputStream(exchange.getRequestBody(), StandardCharsets.UTF_8, GenericJson.class);
+            if (body == null) throw new ApiException(400, "A JSON object is required");
+            return body;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ApiException(400, "Malformed JSON body");
+        }
+    }
+
+    private static String requireString(GenericJson body, String field) {
+        Object value = body.get(field);
+        if (!(value instanceof String text) || text.isBlank()) throw new ApiException(400, field + " is required");
+        return text.trim();
+    }
+
+    // Refuses fractions and values outside int range rather than truncating them into another id
+    private static int requireInt(GenericJson body, String field) {
+        if (!(body.get(field) instanceof Number number)) throw new ApiException(400, field + " must be a number");
+        try {
+            return new BigDecimal(number.toString()).intValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new ApiException(400, field + " must be a whole number");
+        }
+    }
+
+    private static String requireName(GenericJson body) {
+        String name = requireString(body, "name");
+        if (name.length() > 255) throw new ApiException(400, "name is longer than 255 characters");
+        return name;
+    }
+
+    private static Map<String, Object> habitJson(Habit habit) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", habit.getId());
+        json.put("name", habit.getName());
+        return json;
+    }
+
+    // The JSON writer only takes string keys
+    private static Map<String, Object> stringKeys(Map<?, ?> map) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        map.forEach((key, value) -> json.put(key.toString(), value));
+        return json;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, Map.of("error", message == null ? "Bad request" : message));
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = JSON_FACTORY.toByteArray(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
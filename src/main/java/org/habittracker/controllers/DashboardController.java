@@ -1,29 +1,38 @@
 package org.habittracker.controllers;
 
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.geometry.Pos;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
+import javafx.stage.FileChooser;
 import org.habittracker.services.GoogleCalendarService;
 import java.util.Calendar;
 import java.util.Date;
 
 
-import javafx.stage.Stage;
-import org.habittracker.db.HabitDAO;
+import org.habittracker.db.AsyncHabitDAO;
+import org.habittracker.db.HabitDataTransfer;
+import org.habittracker.utils.FxExecutor;
 import org.habittracker.models.Habit;
+import org.habittracker.models.HabitStreak;
+import org.habittracker.utils.Activatable;
+import org.habittracker.utils.AppContext;
+import org.habittracker.utils.UserSession;
 
+import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-public class DashboardController {
+import static org.habittracker.utils.FxExecutor.thenOnFx;
+
+public class DashboardController implements Activatable {
     @FXML
     private Button logoutBtn ;
     @FXML
@@ -37,90 +46,191 @@ public class DashboardController {
     @FXML
     private TextField newHabitField;
 
-    private List<Habit> habits;
-    private final HabitDAO habitDAO = new HabitDAO();
+    private List<Habit> habits = new ArrayList<>();
+    private final AppContext context;
+    // All DB/Calendar I/O goes through here so the FX thread never blocks; set on activation
+    private AsyncHabitDAO asyncDAO;
     private Map<LocalDate, Map<Integer, Boolean>> dailyHabitStatus;
+    // Status of the selected day when it lies outside the loaded grid
+    private Map<Integer, Boolean> selectedDayStatus = Collections.emptyMap();
+    // Streaks as of today, keyed by habit id
+    private Map<Integer, HabitStreak> streaks = new HashMap<>();
+    // Latest month load; superseded loads are cancelled
+    private CompletableFuture<Void> pendingMonthLoad;
+    // Bumped whenever a month load is superseded; a result from an older generation is dropped
+    private int monthLoadGeneration;
 
     private LocalDate currentDate;
     private LocalDate selectedDate;
 
+    // Bounds of the 6x7 grid whose status is held in dailyHabitStatus
+    private LocalDate loadedGridStart;
+    private LocalDate loadedGridEnd;
+
+    // Calendar cells, indexed row * 7 + col, reused across months
+    private static final int GRID_CELLS = 6 * 7;
+    private final StackPane[] dayCells = new StackPane[GRID_CELLS];
+    private final Text[] dayTexts = new Text[GRID_CELLS];
+    private YearMonth displayedMonth;
+    private LocalDate displayedGridStart;
+
     private static final DateTimeFormatter MONTH_YEAR_FORMATTER = DateTimeFormatter.ofPattern("MMMM yyyy");
 
+    public DashboardController(AppContext context) {
+        this.context = context;
+    }
+
+    // The view may be preloaded before anyone logs in, so no data is loaded here
     @FXML
     public void initialize() {
         dailyHabitStatus = new HashMap<>();
         currentDate = LocalDate.now();
         selectedDate = currentDate;
 
-        loadHabits();
-        loadMonthCompletionStatus(currentDate);
-
+        // Draw the empty grid right away; data fills in when the background load completes
         setupCalendar(currentDate);
-        selectDay(currentDate);
     }
 
-    private void loadHabits() {
-        habits = habitDAO.getAllHabits();
-        if (habits.isEmpty()) {
-            habitDAO.addHabit(new Habit("Read 20 pages"));
-            habitDAO.addHabit(new Habit("Drink 2L water"));
-            habits = habitDAO.getAllHabits();
+    @Override
+    public void onActivate() {
+        AsyncHabitDAO dao = context.getHabitDAO();
+        if (dao != asyncDAO) {
+            // Another user logged in: drop what the previous one was looking at
+            asyncDAO = dao;
+            habits = new ArrayList<>();
+            dailyHabitStatus.clear();
+            selectedDayStatus = Collections.emptyMap();
+            streaks = new HashMap<>();
+            loadedGridStart = null;
+            loadedGridEnd = null;
+            currentDate = LocalDate.now();
+            selectedDate = currentDate;
+            setupCalendar(currentDate);
+            refreshHabitList(selectedDate);
+        }
+
+        // Coming back from another screen: the session still has this user's habits
+        List<Habit> sessionHabits = UserSession.getHabits();
+        if (sessionHabits != null) {
+            habits = sessionHabits;
+            refreshCalendarView();
+        } else {
+            loadHabits();
         }
     }
 
-    private void loadMonthCompletionStatus(LocalDate date) {
-        dailyHabitStatus.clear();
-        YearMonth yearMonth = YearMonth.from(date);
-        int daysInMonth = yearMonth.lengthOfMonth();
+    @Override
+    public void onDeactivate() {
+        cancelMonthLoad();
+    }
 
-        for (int day = 1; day <= daysInMonth; day++) {
-            LocalDate dayDate = LocalDate.of(yearMonth.getYear(), yearMonth.getMonth(), day);
-            Map<Integer, Boolean> dayStatus = habitDAO.getCompletionStatusForDay(dayDate);
-            if (!dayStatus.isEmpty())
-                dailyHabitStatus.put(dayDate, dayStatus);
-        }
+    // Not interrupted: an interrupt inside JDBC can close the connection, or for H2 the database file
+    private void cancelMonthLoad() {
+        monthLoadGeneration++;
+        if (pendingMonthLoad != null)
+            pendingMonthLoad.cancel(false);
     }
 
-    private void setupCalendar(LocalDate date) {
-        calendarGrid.getChildren().clear();
-        calendarGrid.getRowConstraints().clear();
+    private void loadHabits() {
+        thenOnFx(asyncDAO.call(dao -> {
+            List<Habit> loaded = dao.getAllHabits();
+            if (loaded.isEmpty()) {
+                dao.addHabit(new Habit("Read 20 pages"));
+                dao.addHabit(new Habit("Drink 2L water"));
+                loaded = dao.getAllHabits();
+            }
+            return loaded;
+        }), loaded -> {
+            habits = loaded;
+            UserSession.setHabits(loaded);
+            refreshCalendarView();
+        });
+    }
 
-        YearMonth yearMonth = YearMonth.from(date);
-        monthYearLabel.setText(yearMonth.format(MONTH_YEAR_FORMATTER));
+    private record MonthStatus(Map<LocalDate, Map<Integer, Boolean>> grid, Map<Integer, Boolean> selectedDay,
+                               Map<Integer, HabitStreak> streaks) {
+    }
 
+    private CompletableFuture<MonthStatus> loadMonthCompletionStatus(LocalDate gridStart, LocalDate gridEnd,
+                                                                     LocalDate selected) {
+        boolean selectedInGrid = !selected.isBefore(gridStart) && !selected.isAfter(gridEnd);
+        return asyncDAO.call(dao -> new MonthStatus(
+                // One query for the whole visible grid, including leading/trailing days of adjacent months
+                dao.getCompletionStatusForRange(gridStart, gridEnd),
+                selectedInGrid ? Collections.emptyMap() : dao.getCompletionStatusForDay(selected),
+                dao.getStreaks()));
+    }
+
+    private Map<Integer, Boolean> getDayStatus(LocalDate date) {
+        if (loadedGridStart != null && !date.isBefore(loadedGridStart) && !date.isAfter(loadedGridEnd))
+            return dailyHabitStatus.getOrDefault(date, Collections.emptyMap());
+        return selectedDayStatus;
+    }
+
+    private static LocalDate firstDayOfGrid(YearMonth yearMonth) {
         LocalDate calendarStart = yearMonth.atDay(1);
         int dayOfWeek = calendarStart.getDayOfWeek().getValue();
         int offset = dayOfWeek == 7 ? 6 : dayOfWeek - 1;
-        LocalDate firstDayOfGrid = calendarStart.minusDays(offset);
+        return calendarStart.minusDays(offset);
+    }
 
+    // Builds the 6x7 cell grid once; month changes only re-label and re-style these nodes
+    private void buildCalendarGrid() {
         for (int row = 0; row < 6; row++) {
             RowConstraints rowC = new RowConstraints();
             rowC.setPercentHeight(100.0 / 6);
             calendarGrid.getRowConstraints().add(rowC);
 
             for (int col = 0; col < 7; col++) {
-                LocalDate dayDate = firstDayOfGrid.plusDays(row * 7L + col);
-                StackPane dayCell = createDayCell(dayDate, yearMonth);
-                calendarGrid.add(dayCell, col, row);
-                updateCellColor(dayDate, dayCell);
+                int index = row * 7 + col;
+                StackPane cell = new StackPane();
+                Text text = new Text();
+                cell.getChildren().add(text);
+                StackPane.setAlignment(text, Pos.TOP_LEFT);
+                cell.getStyleClass().add("day-cell");
+                cell.setOnMouseClicked(e -> {
+                    LocalDate dayDate = displayedGridStart.plusDays(index);
+                    if (YearMonth.from(dayDate).equals(displayedMonth))
+                        selectDay(dayDate);
+                });
+
+                dayCells[index] = cell;
+                dayTexts[index] = text;
+                calendarGrid.add(cell, col, row);
             }
         }
     }
 
-    private StackPane createDayCell(LocalDate dayDate, YearMonth currentMonth) {
-        StackPane cell = new StackPane();
-        Text text = new Text(String.valueOf(dayDate.getDayOfMonth()));
-        cell.getChildren().add(text);
+    private void setupCalendar(LocalDate date) {
+        if (dayCells[0] == null)
+            buildCalendarGrid();
 
-        if (!YearMonth.from(dayDate).equals(currentMonth)) {
-            cell.getStyleClass().add("other-month");
-        } else {
-            cell.setOnMouseClicked(e -> selectDay(dayDate));
+        displayedMonth = YearMonth.from(date);
+        displayedGridStart = firstDayOfGrid(displayedMonth);
+        monthYearLabel.setText(displayedMonth.format(MONTH_YEAR_FORMATTER));
+
+        for (int i = 0; i < GRID_CELLS; i++) {
+            LocalDate dayDate = displayedGridStart.plusDays(i);
+            StackPane cell = dayCells[i];
+            dayTexts[i].setText(String.valueOf(dayDate.getDayOfMonth()));
+
+            boolean otherMonth = !YearMonth.from(dayDate).equals(displayedMonth);
+            if (otherMonth && !cell.getStyleClass().contains("other-month"))
+                cell.getStyleClass().add("other-month");
+            else if (!otherMonth)
+                cell.getStyleClass().remove("other-month");
+
+            updateCellColor(dayDate, cell);
         }
+    }
 
-        StackPane.setAlignment(text, Pos.TOP_LEFT);
-        cell.getStyleClass().add("day-cell");
-        return cell;
+    // Re-styles the single cell showing this date, if it is on the grid
+    private void updateCell(LocalDate date) {
+        if (displayedGridStart == null)
+            return;
+        long index = ChronoUnit.DAYS.between(displayedGridStart, date);
+        if (index >= 0 && index < GRID_CELLS)
+            updateCellColor(date, dayCells[(int) index]);
     }
 
     private void updateCellColor(LocalDate date, StackPane cell) {
@@ -131,7 +241,7 @@ public class DashboardController {
 
         long totalHabits = habits.size();
         if (totalHabits > 0) {
-            Map<Integer, Boolean> status = dailyHabitStatus.getOrDefault(date, new HashMap<>());
+            Map<Integer, Boolean> status = dailyHabitStatus.getOrDefault(date, Collections.emptyMap());
             long completedCount = status.values().stream().filter(b -> b).count();
 
             if (completedCount == totalHabits)
@@ -149,20 +259,36 @@ public class DashboardController {
     }
 
     private void refreshCalendarView() {
-        loadMonthCompletionStatus(currentDate);
-        setupCalendar(currentDate);
-        refreshHabitList(selectedDate);
+        cancelMonthLoad();
+        int generation = monthLoadGeneration;
+
+        LocalDate gridStart = firstDayOfGrid(YearMonth.from(currentDate));
+        LocalDate gridEnd = gridStart.plusDays(GRID_CELLS - 1);
+        pendingMonthLoad = thenOnFx(loadMonthCompletionStatus(gridStart, gridEnd, selectedDate), status -> {
+            if (generation != monthLoadGeneration) return;
+            dailyHabitStatus.clear();
+            dailyHabitStatus.putAll(status.grid());
+            selectedDayStatus = status.selectedDay();
+            streaks = status.streaks();
+            loadedGridStart = gridStart;
+            loadedGridEnd = gridEnd;
+
+            setupCalendar(currentDate);
+            refreshHabitList(selectedDate);
+        });
     }
 
     private void selectDay(LocalDate date) {
+        LocalDate previous = selectedDate;
         selectedDate = date;
+        updateCell(previous);
+        updateCell(date);
         refreshHabitList(date);
-        refreshCalendarView();
     }
 
     private void refreshHabitList(LocalDate date) {
         habitsContainer.getChildren().clear();
-        Map<Integer, Boolean> dayStatus = habitDAO.getCompletionStatusForDay(date);
+        Map<Integer, Boolean> dayStatus = getDayStatus(date);
 
         for (Habit habit : habits) {
             boolean completed = dayStatus.getOrDefault(habit.getId(), false);
@@ -183,20 +309,53 @@ public class DashboardController {
         if (completed)
             item.getStyleClass().add("habit-item-completed");
 
-        item.getChildren().add(checkBox);
+        Pane spacer = new Pane();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        Label streakLabel = new Label();
+        streakLabel.getStyleClass().add("habit-streak");
+        showStreak(streakLabel, streaks.get(habit.getId()));
+
+        item.getChildren().addAll(checkBox, spacer, streakLabel);
+        // Number of the latest toggle, so a streak read for an earlier one cannot overwrite a newer result
+        int[] latestToggle = {0};
         checkBox.setOnAction(e -> {
-            habitDAO.markCompleted(habit, selectedDate, checkBox.isSelected());
-            if (checkBox.isSelected())
+            boolean selected = checkBox.isSelected();
+            if (selected)
                 item.getStyleClass().add("habit-item-completed");
             else
                 item.getStyleClass().remove("habit-item-completed");
-            refreshCalendarView();
+            LocalDate day = selectedDate;
+            // Apply the toggle to the in-memory state and repaint just that day
+            if (loadedGridStart != null && !day.isBefore(loadedGridStart) && !day.isAfter(loadedGridEnd)) {
+                dailyHabitStatus.computeIfAbsent(day, d -> new HashMap<>()).put(habit.getId(), selected);
+            } else {
+                selectedDayStatus = new HashMap<>(selectedDayStatus);
+                selectedDayStatus.put(habit.getId(), selected);
+            }
+            updateCell(day);
+            updateStatusLabel();
+
+            // The index updates streaks as part of the toggle, so re-reading this one habit is cheap
+            int toggle = ++latestToggle[0];
+            thenOnFx(asyncDAO.markCompleted(habit, day, selected).thenCompose(v -> asyncDAO.getStreak(habit)),
+                    streak -> {
+                        if (toggle != latestToggle[0]) return;
+                        streaks.put(habit.getId(), streak);
+                        showStreak(streakLabel, streak);
+                    });
         });
         return item;
     }
 
+    private static void showStreak(Label label, HabitStreak streak) {
+        int current = streak == null ? 0 : streak.getCurrentStreak();
+        label.setText(current > 0 ? "🔥 " + current : "");
+        label.setTooltip(streak == null ? null : new Tooltip(String.format("Best streak: %d days · Last 30 days: %.0f%%",
+                streak.getLongestStreak(), streak.getLast30DaysRate() * 100)));
+    }
+
     private void updateStatusLabel() {
-        Map<Integer, Boolean> status = habitDAO.getCompletionStatusForDay(selectedDate);
+        Map<Integer, Boolean> status = getDayStatus(selectedDate);
         long completedCount = status.values().stream().filter(b -> b).count();
         long totalCount = habits.size();
 
@@ -233,13 +392,13 @@ public class DashboardController {
         dialog.showAndWait().ifPresent(name -> {
             String trimmed = name.trim();
             if (!trimmed.isEmpty() && habits.stream().noneMatch(h -> h.getName().equals(trimmed))) {
-                boolean saved = habitDAO.addHabit(new Habit(trimmed));
-                if (saved) {
-                    loadHabits();
-                    refreshCalendarView();
-                    System.out.println("Added habit: " + trimmed);
-                } else
-                    System.out.println("Failed to add habit to database.");
+                thenOnFx(asyncDAO.addHabit(new Habit(trimmed)), saved -> {
+                    if (saved) {
+                        loadHabits();
+                        System.out.println("Added habit: " + trimmed);
+                    } else
+                        System.out.println("Failed to add habit to database.");
+                });
             }
         });
     }
@@ -274,14 +433,14 @@ public class DashboardController {
             editDialog.showAndWait().ifPresent(newName -> {
                 String trimmedNewName = newName.trim();
                 if (!trimmedNewName.isEmpty() && habits.stream().noneMatch(h -> h.getName().equals(trimmedNewName))) {
-                    boolean updated = habitDAO.updateHabit(habitToEdit, trimmedNewName);
-                    if (updated) {
-                        loadHabits();
-                        refreshCalendarView();
-                        System.out.println("Edited habit: " + habitToEditName + " to " + trimmedNewName);
-                    } else {
-                        System.out.println("Failed to update habit in database.");
-                    }
+                    thenOnFx(asyncDAO.updateHabit(habitToEdit, trimmedNewName), updated -> {
+                        if (updated) {
+                            loadHabits();
+                            System.out.println("Edited habit: " + habitToEditName + " to " + trimmedNewName);
+                        } else {
+                            System.out.println("Failed to update habit in database.");
+                        }
+                    });
                 }
             });
         });
@@ -307,25 +466,77 @@ public class DashboardController {
                 System.out.println("Selected habit not found");
                 return;
             }
-            if (habitDAO.deleteHabit(habitToDelete)) {
-                loadHabits();
-                refreshCalendarView();
-                System.out.println("Deleted habit: " + nameToDelete);
+            thenOnFx(asyncDAO.deleteHabit(habitToDelete), deleted -> {
+                if (deleted) {
+                    loadHabits();
+                    System.out.println("Deleted habit: " + nameToDelete);
+                } else {
+                    System.out.println("Failed to delete habit from database.");
+                }
+            });
+        });
+    }
+    @FXML
+    private void handleExport() {
+        FileChooser chooser = transferChooser("Export Habits");
+        chooser.setInitialFileName("habits-" + LocalDate.now() + ".csv");
+        File file = chooser.showSaveDialog(monthYearLabel.getScene().getWindow());
+        if (file == null)
+            return;
+        runTransfer("Export", asyncDAO.exportData(file.toPath()), () -> refreshHabitList(selectedDate));
+    }
+
+    @FXML
+    private void handleImport() {
+        File file = transferChooser("Import Habits").showOpenDialog(monthYearLabel.getScene().getWindow());
+        if (file == null)
+            return;
+        runTransfer("Import", asyncDAO.importData(file.toPath()), this::loadHabits);
+    }
+
+    private static FileChooser transferChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON", "*.json"));
+        return chooser;
+    }
+
+    // Large files take a while, so the status line says so and a dialog reports the outcome
+    private void runTransfer(String action, CompletableFuture<HabitDataTransfer.Result> transfer, Runnable refresh) {
+        statusLabel.setText(action + " running…");
+        transfer.whenCompleteAsync((result, error) -> {
+            Alert alert;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                cause.printStackTrace();
+                alert = new Alert(Alert.AlertType.ERROR, cause.getMessage());
+                alert.setHeaderText(action + " failed");
             } else {
-                System.out.println("Failed to delete habit from database.");
+                alert = new Alert(Alert.AlertType.INFORMATION, String.format("%,d completions and %d habits.",
+                        result.completions(), result.habits()));
+                alert.setHeaderText(action + " finished");
             }
-        });
+            refresh.run();
+            alert.show();
+        }, FxExecutor.INSTANCE);
     }
+
     @FXML
     private void handleLogout() {
-        try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/habittracker/login.fxml"));;
-            Parent loginRoot = loader.load();
+        cancelMonthLoad();
+        // Queued completion toggles are written before leaving the dashboard
+        thenOnFx(asyncDAO.flushPendingCompletions(), v -> {
+            context.endSession();
+            showLogin();
+        });
+    }
 
-            Scene scene = new Scene(loginRoot);
-            Stage stage = (Stage) logoutBtn.getScene().getWindow();
-            stage.setScene(scene);
-            stage.setTitle("Login");
+    private void showLogin() {
+        try {
+            context.getNavigator().show("/habittracker/login.fxml", "Login");
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -334,13 +545,7 @@ public class DashboardController {
     @FXML
     private void handleAnalytics() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/habittracker/analytics.fxml"));
-            Parent analyticsRoot = loader.load();
-
-            Scene scene = new Scene(analyticsRoot);
-            Stage stage = (Stage) monthYearLabel.getScene().getWindow();
-            stage.setScene(scene);
-            stage.setTitle("Habit Analytics");
+            context.getNavigator().show("/habittracker/analytics.fxml", "Habit Analytics");
         } catch (IOException e) {
             e.printStackTrace();
         }
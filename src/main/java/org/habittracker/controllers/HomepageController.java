@@ -3,21 +3,19 @@ package org.habittracker.controllers;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
-import javafx.stage.Stage;
 import javafx.util.Duration;
+import org.habittracker.utils.Activatable;
+import org.habittracker.utils.AppContext;
 
 import java.io.IOException;
 import java.util.Random;
 
-public class HomepageController {
+public class HomepageController implements Activatable {
 
     @FXML
     private StackPane root; // Must match FXML root type
@@ -33,6 +31,12 @@ public class HomepageController {
 
     private final int NUM_SNOWFLAKES = 100;
     private final Random random = new Random();
+    private final AppContext context;
+    private Timeline timeline;
+
+    public HomepageController(AppContext context) {
+        this.context = context;
+    }
 
     @FXML
     private void initialize() {
@@ -57,7 +61,7 @@ public class HomepageController {
             snowflakes[i] = flake;
         }
 
-        Timeline timeline = new Timeline(new KeyFrame(Duration.millis(30), e -> {
+        timeline = new Timeline(new KeyFrame(Duration.millis(30), e -> {
             for (Circle flake : snowflakes) {
                 flake.setCenterY(flake.getCenterY() + 1 + random.nextDouble() * 2);
                 flake.setCenterX(flake.getCenterX() + Math.sin(flake.getCenterY() / 50) * 0.5);
@@ -68,16 +72,22 @@ public class HomepageController {
             }
         }));
         timeline.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    // The snow only runs while the homepage is on screen
+    @Override
+    public void onActivate() {
         timeline.play();
     }
 
+    @Override
+    public void onDeactivate() {
+        timeline.pause();
+    }
+
     private void handleLogin() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/habittracker/login.fxml"));
-            Parent root = loader.load();
-            Stage stage = (Stage) loginButton.getScene().getWindow();
-            stage.setScene(new Scene(root, 1200, 800));
-            stage.setTitle("Login - Habit Tracker");
+            context.getNavigator().show("/habittracker/login.fxml", "Login - Habit Tracker");
         } catch (IOException e) {
             e.printStackTrace();
             System.out.println("Error loading login page: " + e.getMessage());
@@ -86,11 +96,7 @@ public class HomepageController {
 
     private void handleSignUp() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/habittracker/signup.fxml"));
-            Parent root = loader.load();
-            Stage stage = (Stage) signupButton.getScene().getWindow();
-            stage.setScene(new Scene(root, 1200, 800));
-            stage.setTitle("Sign Up - Habit Tracker");
+            context.getNavigator().show("/habittracker/signup.fxml", "Sign Up - Habit Tracker");
         } catch (IOException e) {
             e.printStackTrace();
             System.out.println("Error loading signup page: " + e.getMessage());
@@ -3,9 +3,7 @@ package org.habittracker.controllers;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
@@ -15,15 +13,18 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
-import javafx.stage.Stage;
 import javafx.util.Duration;
 import org.habittracker.services.AuthService;
+import org.habittracker.utils.Activatable;
+import org.habittracker.utils.AppContext;
+import org.habittracker.utils.FxExecutor;
 
 import java.net.URL;
 import java.util.Random;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 
-public class LoginController implements Initializable {
+public class LoginController implements Initializable, Activatable {
 
     @FXML private TextField usernameField;
     @FXML private PasswordField passwordField;
@@ -35,10 +36,18 @@ public class LoginController implements Initializable {
     @FXML private Button signupButton;
     @FXML private Button homeButton;
 
-    private final AuthService authService = new AuthService();
+    private final AppContext context;
+    private final AuthService authService;
     private final Random random = new Random();
     private final int NUM_PARTICLES = 120;
     private boolean mouseMoving = false;
+    private Timeline timeline;
+    private CompletableFuture<AuthService.LoginResult> pendingLogin;
+
+    public LoginController(AppContext context) {
+        this.context = context;
+        this.authService = context.getAuthService();
+    }
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -46,36 +55,62 @@ public class LoginController implements Initializable {
 
         // Button Actions
         if (signupButton != null) {
-            signupButton.setOnAction(e -> redirectTo("/habittracker/signup.fxml"));
+            signupButton.setOnAction(e -> redirectTo("/habittracker/signup.fxml", "Sign Up - Habit Tracker"));
         }
         if (homeButton != null) {
-            homeButton.setOnAction(e -> redirectTo("/habittracker/homepage.fxml"));
+            homeButton.setOnAction(e -> redirectTo("/habittracker/homepage.fxml", "Habit Tracker - Dashboard"));
         }
     }
 
+    // The view is reused, so the previous visit's password and message are cleared
+    @Override
+    public void onActivate() {
+        passwordField.clear();
+        errorLabel.setText("");
+        timeline.play();
+    }
+
+    @Override
+    public void onDeactivate() {
+        timeline.pause();
+    }
+
     @FXML
     private void handleLogin() {
         String username = usernameField.getText().trim();
         String password = passwordField.getText().trim();
-        boolean success = authService.login(username, password);
-
-        if (success) {
-            errorLabel.setText("Login successful!");
-            errorLabel.setStyle("-fx-text-fill: #4ecdc4;");
-            redirectTo("/habittracker/dashboard.fxml");
-        } else {
-            errorLabel.setText("Invalid username or password");
-            errorLabel.setStyle("-fx-text-fill: #ff6b6b;");
-        }
+        // Checking a password takes a noticeable moment; ignore clicks until it is done
+        if (pendingLogin != null && !pendingLogin.isDone()) return;
+
+        errorLabel.setText("Signing in...");
+        errorLabel.setStyle("-fx-text-fill: #4ecdc4;");
+        pendingLogin = authService.loginAsync(username, password).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                showError("Login failed, please try again");
+                return;
+            }
+            switch (result) {
+                case SUCCESS -> {
+                    errorLabel.setText("Login successful!");
+                    errorLabel.setStyle("-fx-text-fill: #4ecdc4;");
+                    redirectTo("/habittracker/dashboard.fxml", "Habit Tracker - Dashboard");
+                }
+                case INVALID_CREDENTIALS -> showError("Invalid username or password");
+                case RATE_LIMITED -> showError("Too many login attempts, please wait a moment");
+                case LOCKED_OUT -> showError("Too many failed attempts, try again later");
+            }
+        }, FxExecutor.INSTANCE);
+    }
+
+    private void showError(String message) {
+        errorLabel.setText(message);
+        errorLabel.setStyle("-fx-text-fill: #ff6b6b;");
     }
 
-    private void redirectTo(String fxmlPath) {
+    private void redirectTo(String fxmlPath, String title) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Scene scene = new Scene(loader.load());
-            Stage stage = (Stage) rootPane.getScene().getWindow();
-            stage.setScene(scene);
-            stage.show();
+            context.getNavigator().show(fxmlPath, title);
         } catch (Exception e) {
             e.printStackTrace();
             errorLabel.setText("Error loading page");
@@ -107,7 +142,7 @@ public class LoginController implements Initializable {
         // Detect mouse movement only in background
         rootPane.setOnMouseMoved(e -> mouseMoving = !loginContainer.getBoundsInParent().contains(e.getX(), e.getY()));
 
-        Timeline timeline = new Timeline(new KeyFrame(Duration.millis(30), ev -> {
+        timeline = new Timeline(new KeyFrame(Duration.millis(30), ev -> {
             if (mouseMoving) {
                 for (int i = 0; i < NUM_PARTICLES; i++) {
                     double angleRad = Math.toRadians(angles[i]);
@@ -124,6 +159,5 @@ public class LoginController implements Initializable {
             }
         }));
         timeline.setCycleCount(Timeline.INDEFINITE);
-        timeline.play();
     }
 }
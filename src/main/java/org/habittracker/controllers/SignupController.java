@@ -2,9 +2,7 @@ package org.habittracker.controllers;
 
 import javafx.animation.*;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Scene;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Label;
@@ -12,14 +10,19 @@ import javafx.scene.effect.DropShadow;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.stage.Stage;
 import javafx.util.Duration;
 import org.habittracker.services.AuthService;
+import org.habittracker.utils.Activatable;
+import org.habittracker.utils.AppContext;
+import org.habittracker.utils.FxExecutor;
 
 import java.net.URL;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 
-public class SignupController implements Initializable {
+import static org.habittracker.utils.FxExecutor.thenOnFx;
+
+public class SignupController implements Initializable, Activatable {
 
     @FXML private TextField usernameField;
     @FXML private PasswordField passwordField;
@@ -29,7 +32,16 @@ public class SignupController implements Initializable {
     @FXML private VBox signupContainer;
     @FXML private Label errorLabel ;
 
-    private final AuthService authService = new AuthService();
+    private final AppContext context;
+    private final AuthService authService;
+    private Timeline pulseTimeline;
+    private Timeline colorTimeline;
+    private CompletableFuture<Boolean> pendingSignup;
+
+    public SignupController(AppContext context) {
+        this.context = context;
+        this.authService = context.getAuthService();
+    }
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -37,6 +49,43 @@ public class SignupController implements Initializable {
         if (signupContainer != null) {
             addPulsatingEffect();
         }
+        // Tell the user a name is taken when they leave the field, not after they submit
+        usernameField.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) checkUsernameAvailable();
+        });
+    }
+
+    private void checkUsernameAvailable() {
+        String username = usernameField.getText().trim();
+        if (username.isEmpty()) return;
+        thenOnFx(authService.isUsernameAvailableAsync(username), available -> {
+            // Ignore the answer if the name was edited or submitted in the meantime
+            if (!username.equals(usernameField.getText().trim())) return;
+            if (pendingSignup != null && !pendingSignup.isDone()) return;
+            if (available) {
+                messageLabel.setText("");
+            } else {
+                messageLabel.setText("⚠ Username is already taken!");
+                messageLabel.setStyle("-fx-text-fill: #ff6b6b;");
+            }
+        });
+    }
+
+    // The view is reused, so the previous visit's input and message are cleared
+    @Override
+    public void onActivate() {
+        usernameField.clear();
+        passwordField.clear();
+        if (confirmPasswordField != null) confirmPasswordField.clear();
+        messageLabel.setText("");
+        if (pulseTimeline != null) pulseTimeline.play();
+        if (colorTimeline != null) colorTimeline.play();
+    }
+
+    @Override
+    public void onDeactivate() {
+        if (pulseTimeline != null) pulseTimeline.pause();
+        if (colorTimeline != null) colorTimeline.pause();
     }
 
     @FXML
@@ -57,40 +106,38 @@ public class SignupController implements Initializable {
             return;
         }
 
-        boolean success = authService.register(username, password);
-
-        if (success) {
-            messageLabel.setText("✅ User registered successfully!");
-            messageLabel.setStyle("-fx-text-fill: #4ecdc4;");
-
-            // Navigate to dashboard screen
-            try {
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/habittracker/dashboard.fxml"));
-                Scene dashboardScene = new Scene(loader.load());
-
-                Stage stage = (Stage) usernameField.getScene().getWindow();
-                stage.setScene(dashboardScene);
-                stage.show();
-            } catch (Exception e) {
-                e.printStackTrace();
-                errorLabel.setText("Error loading dashboard.");
-                errorLabel.setStyle("-fx-text-fill: #ff6b6b;");
+        // Hashing the password takes a noticeable moment; ignore clicks until it is done
+        if (pendingSignup != null && !pendingSignup.isDone()) return;
+
+        pendingSignup = authService.registerAsync(username, password).whenCompleteAsync((success, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                messageLabel.setText("❌ Signup failed, please try again.");
+                messageLabel.setStyle("-fx-text-fill: #ff6b6b;");
+            } else if (success) {
+                messageLabel.setText("✅ User registered successfully!");
+                messageLabel.setStyle("-fx-text-fill: #4ecdc4;");
+
+                // Navigate to dashboard screen
+                try {
+                    context.getNavigator().show("/habittracker/dashboard.fxml", "Habit Tracker - Dashboard");
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    errorLabel.setText("Error loading dashboard.");
+                    errorLabel.setStyle("-fx-text-fill: #ff6b6b;");
+                }
+            } else {
+                messageLabel.setText("❌ Signup failed. Username may already exist.");
+                messageLabel.setStyle("-fx-text-fill: #ff6b6b;");
             }
-        } else {
-            messageLabel.setText("❌ Signup failed. Username may already exist.");
-            messageLabel.setStyle("-fx-text-fill: #ff6b6b;");
-        }
+        }, FxExecutor.INSTANCE);
     }
 
     // Navigation Buttons
     @FXML
     private void goHome() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/habittracker/homepage.fxml"));
-            Scene homeScene = new Scene(loader.load());
-            Stage stage = (Stage) usernameField.getScene().getWindow();
-            stage.setScene(homeScene);
-            stage.show();
+            context.getNavigator().show("/habittracker/homepage.fxml", "Habit Tracker - Dashboard");
         } catch (Exception e) {
             e.printStackTrace();
             messageLabel.setText("Error loading home page.");
@@ -101,11 +148,7 @@ public class SignupController implements Initializable {
     @FXML
     private void goLogin() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/habittracker/login.fxml"));
-            Scene loginScene = new Scene(loader.load());
-            Stage stage = (Stage) usernameField.getScene().getWindow();
-            stage.setScene(loginScene);
-            stage.show();
+            context.getNavigator().show("/habittracker/login.fxml", "Login - Habit Tracker");
         } catch (Exception e) {
             e.printStackTrace();
             messageLabel.setText("Error loading login page.");
@@ -123,7 +166,7 @@ public class SignupController implements Initializable {
 
         signupContainer.setEffect(glow);
 
-        Timeline pulseTimeline = new Timeline(
+        pulseTimeline = new Timeline(
                 new KeyFrame(Duration.ZERO,
                         new KeyValue(glow.radiusProperty(), 15),
                         new KeyValue(glow.colorProperty(), Color.rgb(108, 99, 255, 0.4))
@@ -139,7 +182,6 @@ public class SignupController implements Initializable {
         );
 
         pulseTimeline.setCycleCount(Timeline.INDEFINITE);
-        pulseTimeline.play();
     }
 
     private void addBackgroundColorAnimation() {
@@ -156,7 +198,7 @@ public class SignupController implements Initializable {
 
         final int[] currentIndex = {0};
 
-        Timeline colorTimeline = new Timeline(
+        colorTimeline = new Timeline(
                 new KeyFrame(Duration.seconds(3), e -> {
                     currentIndex[0] = (currentIndex[0] + 1) % gradients.length;
                     rootPane.setStyle(gradients[currentIndex[0]]);
@@ -164,6 +206,5 @@ public class SignupController implements Initializable {
         );
 
         colorTimeline.setCycleCount(Timeline.INDEFINITE);
-        colorTimeline.play();
     }
 }
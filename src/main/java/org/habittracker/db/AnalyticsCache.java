@@ -0,0 +1,151 @@
+package org.habittracker.db;
+
+import org.habittracker.utils.AppConfig;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded LRU cache of analytics results, keyed by (user, range start, range end).
+ *
+ * A completion toggle only drops the cached ranges that contain its date; a
+ * habit rename or delete only drops the ranges whose per-habit counts mention
+ * that habit. Shared by every HabitDAO in the process, so like the
+ * CompletionIndex it does not see changes made by other processes; set
+ * ANALYTICS_CACHE_SIZE=0 to turn it off.
+ */
+public class AnalyticsCache {
+
+    private static final AnalyticsCache INSTANCE = new AnalyticsCache(AppConfig.getInt("ANALYTICS_CACHE_SIZE", 64));
+
+    public static AnalyticsCache getInstance() {
+        return INSTANCE;
+    }
+
+    public record Key(int userId, LocalDate start, LocalDate end) {
+        boolean contains(LocalDate date) {
+            return !date.isBefore(start) && !date.isAfter(end);
+        }
+    }
+
+    // Either result may be missing until it has been asked for
+    private static final class Entry {
+        Map<LocalDate, Integer> dailyCounts;
+        Map<String, Integer> habitCounts;
+    }
+
+    public record CacheStats(int size, long hits, long misses, long evictions, long invalidations) {
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries;
+    // Bumped on every invalidation; a load that raced with one is returned but not stored
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    AnalyticsCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= AnalyticsCache.this.maxEntries) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    public Map<LocalDate, Integer> dailyCounts(int userId, LocalDate start, LocalDate end,
+                                               Loader<Map<LocalDate, Integer>> loader) throws SQLException {
+        return get(new Key(userId, start, end), e -> e.dailyCounts, (e, v) -> e.dailyCounts = v,
+                () -> Collections.unmodifiableMap(loader.load()));
+    }
+
+    public Map<String, Integer> habitCounts(int userId, LocalDate start, LocalDate end,
+                                            Loader<Map<String, Integer>> loader) throws SQLException {
+        return get(new Key(userId, start, end), e -> e.habitCounts, (e, v) -> e.habitCounts = v,
+                () -> Collections.unmodifiableMap(loader.load()));
+    }
+
+    private <T> T get(Key key, Function<Entry, T> read, BiConsumer<Entry, T> write, Loader<T> loader)
+            throws SQLException {
+        if (maxEntries <= 0) return loader.load();
+
+        long seenGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            T cached = entry == null ? null : read.apply(entry);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            seenGeneration = generation;
+        }
+
+        // Loaded outside the lock so a slow query does not hold up other users' hits
+        T loaded = loader.load();
+        synchronized (this) {
+            if (generation == seenGeneration) {
+                write.accept(entries.computeIfAbsent(key, k -> new Entry()), loaded);
+            }
+        }
+        return loaded;
+    }
+
+    // A completion on this date was toggled
+    public synchronized void dateChanged(int userId, LocalDate date) {
+        invalidate(key -> key.userId() == userId && key.contains(date), entry -> true);
+    }
+
+    // A habit with one of these names was renamed or deleted; ranges without its completions are unaffected
+    public synchronized void habitChanged(int userId, String... names) {
+        invalidate(key -> key.userId() == userId, entry -> {
+            // Only daily counts cached: they cannot tell which habits they include
+            if (entry.habitCounts == null) return true;
+            for (String name : names) {
+                if (name != null && entry.habitCounts.containsKey(name)) return true;
+            }
+            return false;
+        });
+    }
+
+    public synchronized void evictUser(int userId) {
+        invalidate(key -> key.userId() == userId, entry -> true);
+    }
+
+    private void invalidate(Predicate<Key> keyMatches, Predicate<Entry> entryMatches) {
+        generation++;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (keyMatches.test(e.getKey()) && entryMatches.test(e.getValue())) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(entries.size(), hits, misses, evictions, invalidations);
+    }
+}
@@ -0,0 +1,135 @@
+package org.habittracker.db;
+
+import org.habittracker.models.Habit;
+import org.habittracker.models.HabitStreak;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Asynchronous facade over a HabitRepository.
+ *
+ * Every call runs on its own virtual thread so that JDBC, file and Google
+ * Calendar I/O never blocks the JavaFX Application Thread; forUser opens the
+ * repository itself that way too, and calls made before it is ready wait
+ * for it on their own thread. Cancelling a
+ * returned future keeps the task from starting but never interrupts it:
+ * an interrupt inside JDBC can close the connection, and for embedded H2 the
+ * database file, for every user of the pool. Callers drop stale results.
+ */
+public class AsyncHabitDAO {
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final CompletableFuture<HabitRepository> habitDAO;
+    // Tail of the serial chain of toggles and flushes
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+
+    public AsyncHabitDAO(HabitRepository habitDAO) {
+        this(CompletableFuture.completedFuture(habitDAO));
+    }
+
+    private AsyncHabitDAO(CompletableFuture<HabitRepository> habitDAO) {
+        this.habitDAO = habitDAO;
+    }
+
+    // Opening a repository can mean loading a file or running migrations, so it starts in the background
+    public static AsyncHabitDAO forUser(int userId) {
+        return new AsyncHabitDAO(submit(() -> HabitRepository.forUser(userId)));
+    }
+
+    public CompletableFuture<List<Habit>> getAllHabits() {
+        return call(HabitRepository::getAllHabits);
+    }
+
+    public CompletableFuture<Boolean> addHabit(Habit habit) {
+        return call(repository -> repository.addHabit(habit));
+    }
+
+    public CompletableFuture<Boolean> updateHabit(Habit habit, String newName) {
+        return call(repository -> repository.updateHabit(habit, newName));
+    }
+
+    public CompletableFuture<Boolean> deleteHabit(Habit habit) {
+        return call(repository -> repository.deleteHabit(habit));
+    }
+
+    public CompletableFuture<Map<Integer, Boolean>> getCompletionStatusForDay(LocalDate date) {
+        return call(repository -> repository.getCompletionStatusForDay(date));
+    }
+
+    public CompletableFuture<Map<LocalDate, Map<Integer, Boolean>>> getCompletionStatusForRange(LocalDate start, LocalDate end) {
+        return call(repository -> repository.getCompletionStatusForRange(start, end));
+    }
+
+    public CompletableFuture<Map<LocalDate, Integer>> getDailyCompletionCounts(LocalDate start, LocalDate end) {
+        return call(repository -> repository.getDailyCompletionCounts(start, end));
+    }
+
+    public CompletableFuture<Map<String, Integer>> getHabitCompletionCounts(LocalDate start, LocalDate end) {
+        return call(repository -> repository.getHabitCompletionCounts(start, end));
+    }
+
+    public CompletableFuture<Map<Integer, HabitStreak>> getStreaks() {
+        return call(HabitRepository::getStreaks);
+    }
+
+    public CompletableFuture<HabitStreak> getStreak(Habit habit) {
+        return call(repository -> repository.getStreak(habit));
+    }
+
+    // Toggles run one after another in the order they were made, so two quick clicks cannot overtake each other
+    public CompletableFuture<Void> markCompleted(Habit habit, LocalDate date, boolean completed) {
+        return inOrder(repository -> repository.markCompleted(habit, date, completed));
+    }
+
+    // Queued behind earlier toggles, so a flush before logout includes all of them
+    public CompletableFuture<Void> flushPendingCompletions() {
+        return inOrder(HabitRepository::flushPendingCompletions);
+    }
+
+    private synchronized CompletableFuture<Void> inOrder(Consumer<HabitRepository> write) {
+        CompletableFuture<Void> next = lastWrite
+                .handle((ignored, error) -> null)
+                .thenRunAsync(() -> write.accept(habitDAO.join()), EXECUTOR);
+        lastWrite = next;
+        return next;
+    }
+
+    public CompletableFuture<HabitDataTransfer.Result> exportData(Path file) {
+        return submit(() -> habitDAO.join().exportData(file));
+    }
+
+    public CompletableFuture<HabitDataTransfer.Result> importData(Path file) {
+        return submit(() -> habitDAO.join().importData(file));
+    }
+
+    // Runs several DAO calls as one background task, e.g. a read that depends on a write
+    public <T> CompletableFuture<T> call(Function<HabitRepository, T> work) {
+        return submit(() -> work.apply(habitDAO.join()));
+    }
+
+    private static <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = EXECUTOR.submit(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t instanceof CompletionException ? t.getCause() : t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) running.cancel(false);
+        });
+        return result;
+    }
+}
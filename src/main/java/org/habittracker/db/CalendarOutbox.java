@@ -0,0 +1,125 @@
+package org.habittracker.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent queue of Google Calendar operations.
+ *
+ * Entries are written in the same transaction as the habit change that caused
+ * them and are sent later by CalendarSyncWorker, so habit edits never wait on
+ * Google. The table is created by migration V3.
+ */
+public class CalendarOutbox {
+
+    public enum Operation { CREATE, UPDATE, DELETE }
+
+    public record Entry(int id, int habitId, Operation operation, String eventId, int attempts) {
+    }
+
+    // Must be called with the caller's transaction still open
+    static void enqueue(Connection conn, int habitId, Operation operation, String eventId) throws SQLException {
+        String sql = "INSERT INTO calendar_outbox (habit_id, operation, event_id, next_attempt_at) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, habitId);
+            stmt.setString(2, operation.name());
+            stmt.setString(3, eventId);
+            stmt.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            stmt.executeUpdate();
+        }
+    }
+
+    // Drops pending CREATE/UPDATE entries for a habit that is being deleted
+    static void cancelPending(Connection conn, int habitId) throws SQLException {
+        String delete = "DELETE FROM calendar_outbox WHERE habit_id = ? AND operation <> ?";
+        try (PreparedStatement stmt = conn.prepareStatement(delete)) {
+            stmt.setInt(1, habitId);
+            stmt.setString(2, Operation.DELETE.name());
+            stmt.executeUpdate();
+        }
+    }
+
+    public static void enqueue(int habitId, Operation operation, String eventId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            enqueue(conn, habitId, operation, eventId);
+        }
+    }
+
+    // Oldest due entries first, so operations on one habit are replayed in order
+    public static List<Entry> fetchDue(int limit, int maxAttempts) throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        String sql = """
+                SELECT id, habit_id, operation, event_id, attempts
+                FROM calendar_outbox
+                WHERE next_attempt_at <= ? AND attempts < ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            stmt.setInt(2, maxAttempts);
+            stmt.setInt(3, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new Entry(
+                            rs.getInt("id"),
+                            rs.getInt("habit_id"),
+                            Operation.valueOf(rs.getString("operation")),
+                            rs.getString("event_id"),
+                            rs.getInt("attempts")));
+                }
+            }
+        }
+        return entries;
+    }
+
+    public static void remove(int id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM calendar_outbox WHERE id = ?")) {
+            stmt.setInt(1, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    public static void reschedule(int id, int attempts, long nextAttemptAtMillis, String error) throws SQLException {
+        String sql = "UPDATE calendar_outbox SET attempts = ?, next_attempt_at = ?, last_error = ? WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, attempts);
+            stmt.setTimestamp(2, new Timestamp(nextAttemptAtMillis));
+            stmt.setString(3, error == null || error.length() <= 1000 ? error : error.substring(0, 1000));
+            stmt.setInt(4, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Current name and event id of a habit, or null if it has been deleted
+    public static HabitRef findHabit(int habitId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT name, google_event_id FROM habit WHERE id = ?")) {
+            stmt.setInt(1, habitId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new HabitRef(rs.getString("name"), rs.getString("google_event_id")) : null;
+            }
+        }
+    }
+
+    public record HabitRef(String name, String eventId) {
+    }
+
+    // Records the event created for a habit; returns false if the habit no longer exists
+    public static boolean attachEvent(int habitId, String eventId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE habit SET google_event_id = ? WHERE id = ?")) {
+            stmt.setString(1, eventId);
+            stmt.setInt(2, habitId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+}
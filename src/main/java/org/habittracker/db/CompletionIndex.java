@@ -0,0 +1,469 @@
+package org.habittracker.db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+import org.habittracker.models.HabitStreak;
+
+/**
+ * In-memory index of one user's completed days, one bitset per habit.
+ *
+ * Bit i of a habit's bitset is set when the habit was completed on epoch day
+ * base + i, so a year of history costs about 46 bytes per habit. Loaded once
+ * per user from their habit_completion partition and then kept in step by
+ * HabitDAO, which answers the calendar and analytics queries from here
+ * instead of going back to SQL.
+ *
+ * Each bitset also tracks its runs of consecutive days. A toggle only
+ * rescans the runs either side of the day, a word at a time (O(run / 64)),
+ * and the current streak is found the same way; the longest is a lookup.
+ */
+public class CompletionIndex {
+    // A user's index while it loads and after; loads of different users run side by side
+    private static final ConcurrentHashMap<Integer, CompletableFuture<CompletionIndex>> BY_USER = new ConcurrentHashMap<>();
+
+    private final Map<Integer, HabitBits> habits = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // The user's index, loaded from their rows on first use and shared by all of their DAOs
+    public static CompletionIndex forUser(int userId) throws SQLException {
+        CompletableFuture<CompletionIndex> loading = new CompletableFuture<>();
+        CompletableFuture<CompletionIndex> existing = BY_USER.putIfAbsent(userId, loading);
+        if (existing != null) {
+            // Someone else loads it; only callers for the same user wait
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw new SQLException("Could not load the completion index of user " + userId, e.getCause());
+            }
+        }
+
+        try {
+            CompletionIndex loaded = new CompletionIndex();
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                loaded.load(conn, userId);
+            }
+            // Toggles queued but not yet written are newer than what the table holds
+            CompletionWriteBuffer.getInstance().pendingForRange(userId, LocalDate.MIN, LocalDate.MAX)
+                    .forEach((date, status) -> status.forEach((habitId, completed) ->
+                            loaded.setCompleted(habitId, date, completed)));
+            loading.complete(loaded);
+            return loaded;
+        } catch (SQLException | RuntimeException e) {
+            // Not cached, so the next call tries again
+            BY_USER.remove(userId, loading);
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Drops a user's index, e.g. after rows were assigned to them outside the DAO
+    public static void evict(int userId) {
+        BY_USER.remove(userId);
+    }
+
+    void load(Connection conn, int userId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id, name FROM habit WHERE user_id = ?")) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    putHabit(rs.getInt("id"), rs.getString("name"));
+                }
+            }
+        }
+        // Ordered by habit then date so each bitset grows forwards
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                SELECT habit_id, completion_date FROM habit_completion
+                WHERE user_id = ? AND completed = TRUE
+                ORDER BY habit_id, completion_date
+                """)) {
+            stmt.setInt(1, userId);
+            loadCompletions(stmt);
+        }
+    }
+
+    // Just one habit's days, read through its (habit_id, completion_date) key, e.g. for a single streak
+    void loadHabit(Connection conn, int userId, int habitId, String name) throws SQLException {
+        putHabit(habitId, name);
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                SELECT habit_id, completion_date FROM habit_completion
+                WHERE habit_id = ? AND user_id = ? AND completed = TRUE
+                ORDER BY completion_date
+                """)) {
+            stmt.setInt(1, habitId);
+            stmt.setInt(2, userId);
+            loadCompletions(stmt);
+        }
+    }
+
+    private void loadCompletions(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                LocalDate date = rs.getDate("completion_date").toLocalDate();
+                try {
+                    habits.computeIfAbsent(rs.getInt("habit_id"), id -> new HabitBits()).setLoaded(date.toEpochDay());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("⚠️ Completion index skips " + date + ": " + e.getMessage());
+                }
+            }
+        }
+        // Runs are derived in one pass per habit rather than maintained row by row
+        habits.values().forEach(HabitBits::rebuildRuns);
+    }
+
+    // Installs a stored bitset as is; base must be a multiple of 64 and words is not copied
+    void putBits(int habitId, long base, long[] words) {
+        lock.writeLock().lock();
+        try {
+            HabitBits bits = habits.computeIfAbsent(habitId, id -> new HabitBits());
+            bits.base = base;
+            bits.words = words;
+            bits.rebuildRuns();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    interface HabitVisitor {
+        void visit(int habitId, String name, long base, long[] words) throws IOException;
+    }
+
+    // Visits every named habit under the read lock; the visitor must not keep or modify words
+    void forEachHabit(HabitVisitor visitor) throws IOException {
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Integer, HabitBits> entry : habits.entrySet()) {
+                HabitBits bits = entry.getValue();
+                if (bits.name != null) visitor.visit(entry.getKey(), bits.name, bits.base, bits.words);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putHabit(int habitId, String name) {
+        lock.writeLock().lock();
+        try {
+            habits.computeIfAbsent(habitId, id -> new HabitBits()).name = name;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeHabit(int habitId) {
+        lock.writeLock().lock();
+        try {
+            habits.remove(habitId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setCompleted(int habitId, LocalDate date, boolean completed) {
+        lock.writeLock().lock();
+        try {
+            HabitBits bits = habits.get(habitId);
+            if (bits == null) {
+                if (!completed) return;
+                bits = new HabitBits();
+                habits.put(habitId, bits);
+            }
+            bits.set(date.toEpochDay(), completed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isCompleted(int habitId, LocalDate date) {
+        lock.readLock().lock();
+        try {
+            HabitBits bits = habits.get(habitId);
+            return bits != null && bits.get(date.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Only completed habits are listed; callers treat a missing id as not completed
+    public Map<Integer, Boolean> getCompletionStatusForDay(LocalDate date) {
+        long day = date.toEpochDay();
+        Map<Integer, Boolean> status = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            habits.forEach((habitId, bits) -> {
+                if (bits.get(day)) status.put(habitId, true);
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return status;
+    }
+
+    public Map<LocalDate, Map<Integer, Boolean>> getCompletionStatusForRange(LocalDate start, LocalDate end) {
+        Map<LocalDate, Map<Integer, Boolean>> status = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            habits.forEach((habitId, bits) -> bits.forEachSet(start.toEpochDay(), end.toEpochDay(), day ->
+                    status.computeIfAbsent(LocalDate.ofEpochDay(day), d -> new HashMap<>()).put(habitId, true)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return status;
+    }
+
+    public Map<LocalDate, Integer> getDailyCompletionCounts(LocalDate start, LocalDate end) {
+        long from = start.toEpochDay();
+        long to = end.toEpochDay();
+        if (to < from) return new HashMap<>();
+        int[] perDay = new int[(int) (to - from + 1)];
+        lock.readLock().lock();
+        try {
+            for (HabitBits bits : habits.values()) {
+                bits.forEachSet(from, to, day -> perDay[(int) (day - from)]++);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<LocalDate, Integer> counts = new HashMap<>();
+        for (int i = 0; i < perDay.length; i++) {
+            if (perDay[i] > 0) counts.put(LocalDate.ofEpochDay(from + i), perDay[i]);
+        }
+        return counts;
+    }
+
+    // Keyed by habit name like the SQL version, which groups by h.name
+    public Map<String, Integer> getHabitCompletionCounts(LocalDate start, LocalDate end) {
+        Map<String, Integer> counts = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (HabitBits bits : habits.values()) {
+                if (bits.name == null) continue;
+                int count = bits.count(start.toEpochDay(), end.toEpochDay());
+                if (count > 0) counts.merge(bits.name, count, Integer::sum);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    public HabitStreak getStreak(int habitId, LocalDate today) {
+        lock.readLock().lock();
+        try {
+            HabitBits bits = habits.get(habitId);
+            return bits == null ? new HabitStreak(habitId, null, 0, 0, 0, 0, 0) : bits.streak(habitId, today.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<Integer, HabitStreak> getStreaks(LocalDate today) {
+        Map<Integer, HabitStreak> streaks = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            habits.forEach((habitId, bits) -> streaks.put(habitId, bits.streak(habitId, today.toEpochDay())));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return streaks;
+    }
+
+    /**
+     * Completed days of one habit as a growable bitset. base is a multiple of
+     * 64 so that word boundaries line up across habits.
+     */
+    static final class HabitBits {
+        // Widest span of days one bitset may cover, about 200 years (under 10 KB)
+        static final long MAX_SPAN_DAYS = 200 * 366;
+
+        String name;
+        long base;
+        long[] words = new long[0];
+        // Multiset of run lengths (length -> number of runs); the longest streak is lastKey()
+        final TreeMap<Integer, Integer> runs = new TreeMap<>();
+
+        boolean get(long day) {
+            long offset = day - base;
+            if (offset < 0 || offset >= (long) words.length << 6) return false;
+            return (words[(int) (offset >>> 6)] & (1L << offset)) != 0;
+        }
+
+        /*
+         * A toggle only affects the runs either side of the day: setting it joins
+         * left + 1 + right, clearing it splits that run in two. The neighbour scans
+         * stop at the first gap and step a word at a time, so the cost depends on
+         * the local run length, not on how much history the habit has.
+         */
+        void set(long day, boolean completed) {
+            if (get(day) == completed) return;
+            int left = runEndingAt(day - 1);
+            int right = runStartingAt(day + 1);
+            if (completed) {
+                setLoaded(day);
+                removeRun(left);
+                removeRun(right);
+                addRun(left + 1 + right);
+            } else {
+                long offset = day - base;
+                words[(int) (offset >>> 6)] &= ~(1L << offset);
+                removeRun(left + 1 + right);
+                addRun(left);
+                addRun(right);
+            }
+        }
+
+        // Sets a bit without run bookkeeping; rebuildRuns() must follow
+        void setLoaded(long day) {
+            ensureCovers(day);
+            long offset = day - base;
+            words[(int) (offset >>> 6)] |= 1L << offset;
+        }
+
+        void rebuildRuns() {
+            runs.clear();
+            int run = 0;
+            for (long word : words) {
+                if (word == -1L) {
+                    run += 64;
+                    continue;
+                }
+                for (int bit = 0; bit < 64; bit++) {
+                    if ((word & (1L << bit)) != 0) {
+                        run++;
+                    } else {
+                        addRun(run);
+                        run = 0;
+                    }
+                }
+            }
+            addRun(run);
+        }
+
+        private void addRun(int length) {
+            if (length > 0) runs.merge(length, 1, Integer::sum);
+        }
+
+        private void removeRun(int length) {
+            if (length > 0) runs.computeIfPresent(length, (k, n) -> n == 1 ? null : n - 1);
+        }
+
+        // Consecutive completed days ending at day (inclusive), scanning backwards
+        int runEndingAt(long day) {
+            int length = 0;
+            while (true) {
+                long offset = day - base;
+                if (offset < 0 || offset >= (long) words.length << 6) return length;
+                int bit = (int) (offset & 63);
+                // Move bit to the top; leading zeros of the inverted word are the run's length
+                int ones = Math.min(bit + 1, Long.numberOfLeadingZeros(~words[(int) (offset >>> 6)] << (63 - bit)));
+                length += ones;
+                if (ones <= bit) return length;
+                day -= ones;
+            }
+        }
+
+        // Consecutive completed days starting at day (inclusive), scanning forwards
+        int runStartingAt(long day) {
+            int length = 0;
+            while (true) {
+                long offset = day - base;
+                if (offset < 0 || offset >= (long) words.length << 6) return length;
+                int bit = (int) (offset & 63);
+                int ones = Math.min(64 - bit, Long.numberOfTrailingZeros(~words[(int) (offset >>> 6)] >>> bit));
+                length += ones;
+                if (ones < 64 - bit) return length;
+                day += ones;
+            }
+        }
+
+        HabitStreak streak(int habitId, long today) {
+            // A streak is still alive if today is not done yet but yesterday was
+            int current = get(today) ? runEndingAt(today) : runEndingAt(today - 1);
+            int longest = runs.isEmpty() ? 0 : runs.lastKey();
+            return new HabitStreak(habitId, name, current, longest,
+                    rate(today, 7), rate(today, 30), rate(today, 365));
+        }
+
+        private double rate(long today, int days) {
+            return count(today - days + 1, today) / (double) days;
+        }
+
+        // Sizes are worked out in long and checked against MAX_SPAN_DAYS, so a distant day fails instead of overflowing
+        private void ensureCovers(long day) {
+            long wordStart = Math.floorDiv(day, 64) * 64;
+            if (words.length == 0) {
+                base = wordStart;
+                words = new long[1];
+            } else if (day < base) {
+                long extra = (base - wordStart) >>> 6;
+                long[] grown = new long[checkedWords(words.length + extra)];
+                System.arraycopy(words, 0, grown, (int) extra, words.length);
+                words = grown;
+                base = wordStart;
+            } else if (day - base >= (long) words.length << 6) {
+                long needed = checkedWords(((day - base) >>> 6) + 1);
+                long limit = MAX_SPAN_DAYS / 64 + 2;
+                long[] grown = new long[(int) Math.min(limit, Math.max(needed, words.length + (words.length >> 1)))];
+                System.arraycopy(words, 0, grown, 0, words.length);
+                words = grown;
+            }
+        }
+
+        private static int checkedWords(long count) {
+            // Word alignment can add up to one word at either end
+            if (count < 0 || count > MAX_SPAN_DAYS / 64 + 2)
+                throw new IllegalArgumentException("Completions would span more than " + MAX_SPAN_DAYS + " days");
+            return (int) count;
+        }
+
+        // Number of completed days in [from, to] via popcount of masked words
+        int count(long from, long to) {
+            int total = 0;
+            int firstWord = wordIndex(from);
+            int lastWord = (int) Math.max(-1, Math.min(words.length - 1L, Math.floorDiv(to - base, 64)));
+            for (int w = firstWord; w <= lastWord; w++) {
+                total += Long.bitCount(words[w] & mask(w, from, to));
+            }
+            return total;
+        }
+
+        void forEachSet(long from, long to, LongConsumer action) {
+            int firstWord = wordIndex(from);
+            int lastWord = (int) Math.max(-1, Math.min(words.length - 1L, Math.floorDiv(to - base, 64)));
+            for (int w = firstWord; w <= lastWord; w++) {
+                long bitsLeft = words[w] & mask(w, from, to);
+                while (bitsLeft != 0) {
+                    action.accept(base + ((long) w << 6) + Long.numberOfTrailingZeros(bitsLeft));
+                    bitsLeft &= bitsLeft - 1;
+                }
+            }
+        }
+
+        // First word at or after day, clamped to the array so distant days do not overflow the int
+        private int wordIndex(long day) {
+            return (int) Math.min(words.length, Math.max(0, Math.floorDiv(day - base, 64)));
+        }
+
+        // Bits of word w that fall inside [from, to]
+        private long mask(int w, long from, long to) {
+            long wordStart = base + ((long) w << 6);
+            long lo = Math.max(from, wordStart) - wordStart;
+            long hi = Math.min(to, wordStart + 63) - wordStart;
+            if (hi < lo) return 0;
+            return (-1L << lo) & (-1L >>> (63 - hi));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.habittracker.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pre-aggregated completion counts for analytics ranges.
+ *
+ * completion_daily_rollup holds the number of completed habits per user and
+ * day, completion_monthly_rollup the number of completed days per habit and
+ * month (created by migration V5). Rows touched by a flush are recounted from
+ * habit_completion in the flush's own transaction, so the rollups never drift
+ * from the raw rows and a toggle that is undone before it is written costs
+ * nothing.
+ */
+public class CompletionRollup {
+
+    private static final String H2_DAILY_REFRESH = """
+            MERGE INTO completion_daily_rollup (user_id, rollup_date, completed_count) KEY (user_id, rollup_date)
+            SELECT ?, ?, COUNT(*) FROM habit_completion
+            WHERE user_id = ? AND completion_date = ? AND completed = TRUE
+            """;
+    private static final String MYSQL_DAILY_REFRESH = """
+            INSERT INTO completion_daily_rollup (user_id, rollup_date, completed_count)
+            SELECT ?, ?, COUNT(*) FROM habit_completion
+            WHERE user_id = ? AND completion_date = ? AND completed = TRUE
+            ON DUPLICATE KEY UPDATE completed_count = VALUES(completed_count)
+            """;
+    private static final String H2_MONTHLY_REFRESH = """
+            MERGE INTO completion_monthly_rollup (habit_id, month_start, user_id, completed_count) KEY (habit_id, month_start)
+            SELECT ?, ?, ?, COUNT(*) FROM habit_completion
+            WHERE habit_id = ? AND completion_date BETWEEN ? AND ? AND completed = TRUE
+            """;
+    private static final String MYSQL_MONTHLY_REFRESH = """
+            INSERT INTO completion_monthly_rollup (habit_id, month_start, user_id, completed_count)
+            SELECT ?, ?, ?, COUNT(*) FROM habit_completion
+            WHERE habit_id = ? AND completion_date BETWEEN ? AND ? AND completed = TRUE
+            ON DUPLICATE KEY UPDATE completed_count = VALUES(completed_count)
+            """;
+
+    private record Day(int userId, LocalDate date) {
+    }
+
+    private record Month(int userId, int habitId, LocalDate start) {
+    }
+
+    private CompletionRollup() {
+    }
+
+    // Recounts the days and habit-months the given completions fall in; must run in the writer's transaction
+    static void refresh(Connection conn, Collection<CompletionWriteBuffer.Key> changed) throws SQLException {
+        Set<Day> days = new LinkedHashSet<>();
+        Set<Month> months = new LinkedHashSet<>();
+        for (CompletionWriteBuffer.Key key : changed) {
+            days.add(new Day(key.userId(), key.date()));
+            months.add(new Month(key.userId(), key.habitId(), key.date().withDayOfMonth(1)));
+        }
+
+        boolean h2 = DatabaseConnection.getDialect() == SqlDialect.H2;
+        try (PreparedStatement stmt = conn.prepareStatement(h2 ? H2_DAILY_REFRESH : MYSQL_DAILY_REFRESH)) {
+            for (Day day : days) {
+                stmt.setInt(1, day.userId());
+                stmt.setDate(2, java.sql.Date.valueOf(day.date()));
+                stmt.setInt(3, day.userId());
+                stmt.setDate(4, java.sql.Date.valueOf(day.date()));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(h2 ? H2_MONTHLY_REFRESH : MYSQL_MONTHLY_REFRESH)) {
+            for (Month month : months) {
+                stmt.setInt(1, month.habitId());
+                stmt.setDate(2, java.sql.Date.valueOf(month.start()));
+                stmt.setInt(3, month.userId());
+                stmt.setInt(4, month.habitId());
+                stmt.setDate(5, java.sql.Date.valueOf(month.start()));
+                stmt.setDate(6, java.sql.Date.valueOf(month.start().plusMonths(1).minusDays(1)));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    // Takes a habit's completions out of the rollups; call before deleting them, in the same transaction
+    static void removeHabit(Connection conn, int userId, int habitId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                UPDATE completion_daily_rollup SET completed_count = completed_count - 1
+                WHERE user_id = ? AND rollup_date IN (
+                    SELECT completion_date FROM habit_completion WHERE habit_id = ? AND completed = TRUE)
+                """)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, habitId);
+            stmt.executeUpdate();
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM completion_monthly_rollup WHERE habit_id = ?")) {
+            stmt.setInt(1, habitId);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Recounts every rollup row of a user from scratch, e.g. after completions were assigned to them in bulk
+    public static void rebuild(Connection conn, int userId) throws SQLException {
+        boolean h2 = DatabaseConnection.getDialect() == SqlDialect.H2;
+        String monthStart = h2
+                ? "DATEADD(DAY, 1 - DAY_OF_MONTH(completion_date), completion_date)"
+                : "DATE_SUB(completion_date, INTERVAL DAYOFMONTH(completion_date) - 1 DAY)";
+        String[] statements = {
+                "DELETE FROM completion_daily_rollup WHERE user_id = ?",
+                """
+                INSERT INTO completion_daily_rollup (user_id, rollup_date, completed_count)
+                SELECT user_id, completion_date, COUNT(*) FROM habit_completion
+                WHERE user_id = ? AND completed = TRUE
+                GROUP BY user_id, completion_date
+                """,
+                "DELETE FROM completion_monthly_rollup WHERE user_id = ?",
+                """
+                INSERT INTO completion_monthly_rollup (habit_id, month_start, user_id, completed_count)
+                SELECT habit_id, %1$s, user_id, COUNT(*) FROM habit_completion
+                WHERE user_id = ? AND completed = TRUE
+                GROUP BY habit_id, %1$s, user_id
+                """.formatted(monthStart),
+        };
+        for (String sql : statements) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, userId);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    // Days in [start, end] with at least one completed habit
+    static Map<LocalDate, Integer> dailyCounts(Connection conn, int userId, LocalDate start, LocalDate end)
+            throws SQLException {
+        Map<LocalDate, Integer> counts = new HashMap<>();
+        String sql = """
+                SELECT rollup_date, completed_count
+                FROM completion_daily_rollup
+                WHERE user_id = ? AND rollup_date BETWEEN ? AND ? AND completed_count > 0
+                """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setDate(2, java.sql.Date.valueOf(start));
+            stmt.setDate(3, java.sql.Date.valueOf(end));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getDate("rollup_date").toLocalDate(), rs.getInt("completed_count"));
+                }
+            }
+        }
+        return counts;
+    }
+
+    // Completed days per habit name in [start, end]: whole months from the rollup, partial months at either end raw
+    static Map<String, Integer> habitCounts(Connection conn, int userId, LocalDate start, LocalDate end)
+            throws SQLException {
+        Map<String, Integer> counts = new HashMap<>();
+        LocalDate firstWhole = start.getDayOfMonth() == 1 ? start : start.withDayOfMonth(1).plusMonths(1);
+        LocalDate afterLastWhole = end.plusDays(1).withDayOfMonth(1);
+        if (!firstWhole.isBefore(afterLastWhole)) {
+            addRawCounts(conn, userId, start, end, counts);
+            return counts;
+        }
+
+        if (start.isBefore(firstWhole))
+            addRawCounts(conn, userId, start, firstWhole.minusDays(1), counts);
+        String sql = """
+                SELECT h.name, SUM(r.completed_count) AS total
+                FROM completion_monthly_rollup r
+                JOIN habit h ON r.habit_id = h.id
+                WHERE r.user_id = ? AND r.month_start >= ? AND r.month_start < ?
+                GROUP BY h.name
+                """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setDate(2, java.sql.Date.valueOf(firstWhole));
+            stmt.setDate(3, java.sql.Date.valueOf(afterLastWhole));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.merge(rs.getString("name"), rs.getInt("total"), Integer::sum);
+                }
+            }
+        }
+        if (!end.isBefore(afterLastWhole))
+            addRawCounts(conn, userId, afterLastWhole, end, counts);
+        counts.values().removeIf(total -> total == 0);
+        return counts;
+    }
+
+    private static void addRawCounts(Connection conn, int userId, LocalDate start, LocalDate end,
+                                     Map<String, Integer> counts) throws SQLException {
+        String sql = """
+                SELECT h.name, COUNT(*) AS total
+                FROM habit_completion hc
+                JOIN habit h ON hc.habit_id = h.id
+                WHERE hc.user_id = ?
+                  AND hc.completion_date BETWEEN ? AND ?
+                  AND hc.completed = TRUE
+                GROUP BY h.name
+                """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setDate(2, java.sql.Date.valueOf(start));
+            stmt.setDate(3, java.sql.Date.valueOf(end));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.merge(rs.getString("name"), rs.getInt("total"), Integer::sum);
+                }
+            }
+        }
+    }
+}
@@ -1,42 +1,99 @@
 package org.habittracker.db;
 
-import java.io.InputStream;
+import org.habittracker.utils.AppConfig;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.Properties;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class DatabaseConnection {
-    private static String DB_URL;
-    private static String DB_USER;
-    private static String DB_PASSWORD;
+    // These properties must be set to your MySQL details in config.properties, or to an H2 file URL
+    private static final String DB_URL = embeddedSettings(AppConfig.get("DB_URL"));
+    private static final String DB_USER = AppConfig.get("DB_USER");
+    private static final String DB_PASSWORD = AppConfig.get("DB_PASSWORD");
 
-    static {
-        try (InputStream input = DatabaseConnection.class
-                .getClassLoader()
-                .getResourceAsStream("config.properties")) {
+    private static final List<Runnable> BEFORE_CLOSE = new CopyOnWriteArrayList<>();
 
-            Properties prop = new Properties();
-            if (input == null) {
-                throw new RuntimeException("config.properties not found in resources!");
+    private static final ConnectionPool POOL;
+
+    static {
+        // Pool sizing; defaults suit a single desktop client
+        POOL = new ConnectionPool(
+                DB_URL, DB_USER, DB_PASSWORD,
+                AppConfig.getInt("DB_POOL_MIN_SIZE", 1),
+                AppConfig.getInt("DB_POOL_MAX_SIZE", 8),
+                AppConfig.getLong("DB_POOL_IDLE_TIMEOUT_MS", 300_000),
+                AppConfig.getLong("DB_POOL_BORROW_TIMEOUT_MS", 5_000),
+                AppConfig.getLong("DB_POOL_LEAK_THRESHOLD_MS", 60_000));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // JVM hooks run concurrently, so whatever still needs the database runs here, before the pool closes
+            for (Runnable task : BEFORE_CLOSE) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
             }
-            prop.load(input);
+            POOL.close();
+        }, "db-pool-shutdown"));
+    }
 
-            // These properties must be set to your MySQL details
-            DB_URL = prop.getProperty("DB_URL");
-            DB_USER = prop.getProperty("DB_USER");
-            DB_PASSWORD = prop.getProperty("DB_PASSWORD");
+    // Runs a task on JVM exit while connections can still be borrowed, e.g. a final flush
+    public static void beforeShutdown(Runnable task) {
+        BEFORE_CLOSE.add(task);
+    }
 
-            // Manually register the driver if needed, though DriverManager usually finds it
-            // Class.forName("com.mysql.cj.jdbc.Driver"); 
+    /*
+     * Embedded H2 gets the settings the DAOs rely on (MySQL mode, lower-case
+     * names) plus ones suited to a single-user desktop install, unless the URL
+     * already sets them:
+     *   CACHE_SIZE   page cache in KB; a few years of habits fit in a fraction of H2's 64 MB default
+     *   WRITE_DELAY  ms before committed changes are written out; the write buffer already
+     *                groups toggles, and a clean shutdown writes everything
+     *   AUTO_SERVER  off unless H2_AUTO_SERVER=true; lets a second app instance connect
+     *                through the first one, which is only safe with the completion index
+     *                and caches turned off, since they assume no other process writes
+     * The last three only apply to file databases; tcp: and mem: URLs are left alone.
+     */
+    static String embeddedSettings(String url) {
+        if (SqlDialect.fromUrl(url) != SqlDialect.H2) return url;
+        StringBuilder tuned = new StringBuilder(url);
+        appendIfMissing(tuned, "MODE", "MySQL");
+        appendIfMissing(tuned, "DATABASE_TO_LOWER", "TRUE");
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load DB configuration", e);
+        String location = url.substring("jdbc:h2:".length()).toLowerCase(Locale.ROOT);
+        if (location.startsWith("mem:") || location.startsWith("tcp:") || location.startsWith("ssl:")) {
+            return tuned.toString();
         }
+        appendIfMissing(tuned, "CACHE_SIZE", String.valueOf(AppConfig.getInt("H2_CACHE_SIZE_KB", 8192)));
+        appendIfMissing(tuned, "WRITE_DELAY", String.valueOf(AppConfig.getInt("H2_WRITE_DELAY_MS", 1000)));
+        appendIfMissing(tuned, "AUTO_SERVER", String.valueOf(AppConfig.getBoolean("H2_AUTO_SERVER", false)).toUpperCase());
+        return tuned.toString();
     }
 
+    private static void appendIfMissing(StringBuilder url, String setting, String value) {
+        if (!url.toString().toUpperCase(Locale.ROOT).contains(";" + setting + "=")) {
+            url.append(';').append(setting).append('=').append(value);
+        }
+    }
+
+    // Borrows a pooled connection; close() hands it back to the pool
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return POOL.borrow();
+    }
+
+    // Closes pooled connections; also run by the shutdown hook, so calling it early is harmless
+    public static void shutdown() {
+        POOL.close();
+    }
+
+    public static SqlDialect getDialect() {
+        return SqlDialect.fromUrl(DB_URL);
+    }
+
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return POOL.getStats();
     }
-}
\ No newline at end of file
+}
@@ -1,60 +1,85 @@
 package org.habittracker.db;
 
 import org.habittracker.models.Habit;
-import org.habittracker.services.GoogleCalendarService;
+import org.habittracker.models.HabitStreak;
+import org.habittracker.services.CalendarSyncWorker;
+import org.habittracker.utils.AppConfig;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.*;
-import java.io.IOException;
-import java.security.GeneralSecurityException;
 
-public class HabitDAO {
-    private Connection conn;
+public class HabitDAO implements HabitRepository {
+    // Calendar changes go through the outbox table; disable for offline use or load tests
+    private static final boolean CALENDAR_SYNC_ENABLED = AppConfig.getBoolean("GOOGLE_CALENDAR_SYNC_ENABLED", true);
+
+    // Answer calendar/analytics reads from the in-memory CompletionIndex; turn off when several
+    // processes write to the same database, since the index only sees this process's changes
+    private static final boolean COMPLETION_INDEX_ENABLED = AppConfig.getBoolean("COMPLETION_INDEX_ENABLED", true);
+
+    private final CompletionWriteBuffer writeBuffer = CompletionWriteBuffer.getInstance();
+    private final AnalyticsCache analyticsCache = AnalyticsCache.getInstance();
+    // Every query is scoped to this user's habits and completions
+    private final int userId;
 
-    public HabitDAO() {
+    // Each operation borrows a pooled connection instead of holding one for the DAO's lifetime
+    public HabitDAO(int userId) {
+        this.userId = userId;
         try {
-            conn = DatabaseConnection.getConnection();
+            SchemaMigrator.migrate();
             System.out.println("✅ Connected to DB: habit_tracker");
-            createTables();
         } catch (SQLException e) {
             System.err.println("Database connection failed.");
             throw new RuntimeException("Failed to establish DB connection or create tables.", e);
         }
     }
 
-    private void createTables() throws SQLException {
-        String habitTable = """
-                CREATE TABLE IF NOT EXISTS habit (
-                    id INT PRIMARY KEY AUTO_INCREMENT,
-                    name VARCHAR(255) NOT NULL,
-                    google_event_id VARCHAR(255)  -- 🔹 new column
-                )
-                """;
-        String completionTable = """
-                CREATE TABLE IF NOT EXISTS habit_completion (
-                    id INT PRIMARY KEY AUTO_INCREMENT,
-                    habit_id INT NOT NULL,
-                    completion_date DATE NOT NULL,
-                    completed BOOLEAN NOT NULL DEFAULT FALSE,
-                    FOREIGN KEY (habit_id) REFERENCES habit(id)
-                )
-                """;
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(habitTable);
-            stmt.execute(completionTable);
+    // Gives habits and completions from before accounts were separated to one user; until then they
+    // belong to nobody and stay hidden. Only AssignLegacyHabits calls this, as a one-off admin step.
+    public static int assignUnownedRows(int userId) throws SQLException {
+        SchemaMigrator.migrate();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement habits = conn.prepareStatement("UPDATE habit SET user_id = ? WHERE user_id IS NULL");
+                 PreparedStatement completions = conn.prepareStatement("""
+                         UPDATE habit_completion SET user_id =
+                             (SELECT h.user_id FROM habit h WHERE h.id = habit_completion.habit_id)
+                         WHERE user_id IS NULL
+                         """)) {
+                habits.setInt(1, userId);
+                int assigned = habits.executeUpdate();
+                completions.executeUpdate();
+                if (assigned > 0) CompletionRollup.rebuild(conn, userId);
+                conn.commit();
+                if (assigned > 0) {
+                    CompletionIndex.evict(userId);
+                    AnalyticsCache.getInstance().evictUser(userId);
+                }
+                return assigned;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
+    @Override
     public List<Habit> getAllHabits() {
         List<Habit> habits = new ArrayList<>();
-        String sql = "SELECT * FROM habit";
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                Habit h = new Habit(rs.getInt("id"), rs.getString("name"), false);
-                h.setGoogleEventId(rs.getString("google_event_id")); // 🔹 add this
-                habits.add(h);
+        String sql = "SELECT id, name, google_event_id FROM habit WHERE user_id = ? ORDER BY id";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Habit h = new Habit(rs.getInt("id"), rs.getString("name"), false);
+                    h.setGoogleEventId(rs.getString("google_event_id")); // 🔹 add this
+                    habits.add(h);
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -62,118 +87,188 @@ public class HabitDAO {
         return habits;
     }
 
-    public boolean addHabit(Habit habit) {
-        String sql = "INSERT INTO habit (name, google_event_id) VALUES (?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            // 🔹 Step 1: Create Google Calendar event first
-            String eventId = null;
-            try {
-                eventId = GoogleCalendarService.addEvent(
-                        habit.getName(),
-                        "Reminder for habit: " + habit.getName(),
-                        new java.util.Date(), // current time
-                        60 // duration: 60 min
-                );
-            } catch (IOException | GeneralSecurityException e) {
-                e.printStackTrace();
-                System.out.println("⚠️ Failed to create Google Calendar event.");
+    @Override
+    public Habit findHabit(int habitId) {
+        String sql = "SELECT id, name, google_event_id FROM habit WHERE id = ? AND user_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, habitId);
+            stmt.setInt(2, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return null;
+                Habit habit = new Habit(rs.getInt("id"), rs.getString("name"), false);
+                habit.setGoogleEventId(rs.getString("google_event_id"));
+                return habit;
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-            habit.setGoogleEventId(eventId);
+    @Override
+    public boolean addHabit(Habit habit) {
+        String sql = "INSERT INTO habit (user_id, name, google_event_id) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                // 🔹 Store in database; the calendar event is created later by CalendarSyncWorker
+                stmt.setInt(1, userId);
+                stmt.setString(2, habit.getName());
+                stmt.setString(3, null);
+                int affected = stmt.executeUpdate();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    if (keys.next()) habit.setId(keys.getInt(1));
+                }
 
-            // 🔹 Step 2: Store in database
-            stmt.setString(1, habit.getName());
-            stmt.setString(2, eventId);
-            int affected = stmt.executeUpdate();
-            return affected > 0;
+                if (CALENDAR_SYNC_ENABLED)
+                    CalendarOutbox.enqueue(conn, habit.getId(), CalendarOutbox.Operation.CREATE, null);
+                conn.commit();
 
+                CompletionIndex index = index();
+                if (index != null && affected > 0) index.putHabit(habit.getId(), habit.getName());
+                wakeCalendarSync();
+                return affected > 0;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    @Override
     public boolean updateHabit(Habit habit, String newName) {
-        String sql = "UPDATE habit SET name = ? WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, newName);
-            stmt.setInt(2, habit.getId());
-            int affected = stmt.executeUpdate();
-
-            // 🔹 Update Google Calendar event too
-            if (habit.getGoogleEventId() != null) {
-                try {
-                    GoogleCalendarService.updateEvent(
-                            habit.getGoogleEventId(),
-                            newName,
-                            "Updated habit: " + newName
-                    );
-                } catch (IOException | GeneralSecurityException e) {
-                    e.printStackTrace();
-                    System.out.println("⚠️ Failed to update Google Calendar event.");
-                }
-            }
+        String sql = "UPDATE habit SET name = ? WHERE id = ? AND user_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, newName);
+                stmt.setInt(2, habit.getId());
+                stmt.setInt(3, userId);
+                int affected = stmt.executeUpdate();
 
-            return affected > 0;
+                // 🔹 Update Google Calendar event too (asynchronously, via the outbox)
+                if (affected > 0 && CALENDAR_SYNC_ENABLED)
+                    CalendarOutbox.enqueue(conn, habit.getId(), CalendarOutbox.Operation.UPDATE, null);
+                conn.commit();
+
+                CompletionIndex index = index();
+                if (index != null && affected > 0) index.putHabit(habit.getId(), newName);
+                // Per-habit counts are keyed by name; a rename into an existing name merges with it
+                if (affected > 0) analyticsCache.habitChanged(userId, habit.getName(), newName);
+                wakeCalendarSync();
+                return affected > 0;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    @Override
     public boolean deleteHabit(Habit habit) {
-        String deleteCompletions = "DELETE FROM habit_completion WHERE habit_id = ?";
-        String deleteHabit = "DELETE FROM habit WHERE id = ?";
-        try {
+        String findEvent = "SELECT name, google_event_id FROM habit WHERE id = ? AND user_id = ?";
+        String deleteCompletions = "DELETE FROM habit_completion WHERE habit_id = ? AND user_id = ?";
+        String deleteHabit = "DELETE FROM habit WHERE id = ? AND user_id = ?";
+        writeBuffer.discardHabit(userId, habit.getId());
+        try (Connection conn = DatabaseConnection.getConnection()) {
             conn.setAutoCommit(false);
+            try {
+                // Use the stored event id; the in-memory Habit may predate the calendar sync
+                String eventId = null;
+                String name;
+                try (PreparedStatement stmt = conn.prepareStatement(findEvent)) {
+                    stmt.setInt(1, habit.getId());
+                    stmt.setInt(2, userId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            return false; // not this user's habit
+                        }
+                        eventId = rs.getString("google_event_id");
+                        name = rs.getString("name");
+                    }
+                }
 
-            // 🔹 Delete completions
-            try (PreparedStatement stmt = conn.prepareStatement(deleteCompletions)) {
-                stmt.setInt(1, habit.getId());
-                stmt.executeUpdate();
-            }
+                // 🔹 Delete completions, taking them out of the analytics rollups first
+                CompletionRollup.removeHabit(conn, userId, habit.getId());
+                try (PreparedStatement stmt = conn.prepareStatement(deleteCompletions)) {
+                    stmt.setInt(1, habit.getId());
+                    stmt.setInt(2, userId);
+                    stmt.executeUpdate();
+                }
 
-            // 🔹 Delete from Google Calendar
-            if (habit.getGoogleEventId() != null) {
-                try {
-                    GoogleCalendarService.deleteEvent(habit.getGoogleEventId());
-                } catch (IOException | GeneralSecurityException e) {
-                    e.printStackTrace();
-                    System.out.println("⚠️ Failed to delete Google Calendar event.");
+                // 🔹 Delete from local DB
+                int affected;
+                try (PreparedStatement stmt = conn.prepareStatement(deleteHabit)) {
+                    stmt.setInt(1, habit.getId());
+                    stmt.setInt(2, userId);
+                    affected = stmt.executeUpdate();
                 }
-            }
 
-            // 🔹 Delete from local DB
-            int affected;
-            try (PreparedStatement stmt = conn.prepareStatement(deleteHabit)) {
-                stmt.setInt(1, habit.getId());
-                affected = stmt.executeUpdate();
-            }
+                // 🔹 Queue removal from Google Calendar; pending creates/updates are moot now
+                CalendarOutbox.cancelPending(conn, habit.getId());
+                if (eventId != null)
+                    CalendarOutbox.enqueue(conn, habit.getId(), CalendarOutbox.Operation.DELETE, eventId);
 
-            conn.commit();
-            conn.setAutoCommit(true);
-            return affected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            try {
+                conn.commit();
+                // Again after the commit, for toggles that came in while the delete ran
+                writeBuffer.discardHabit(userId, habit.getId());
+
+                CompletionIndex index = index();
+                if (index != null) index.removeHabit(habit.getId());
+                analyticsCache.habitChanged(userId, name);
+                wakeCalendarSync();
+                return affected > 0;
+            } catch (SQLException e) {
                 conn.rollback();
+                throw e;
+            } finally {
                 conn.setAutoCommit(true);
-            } catch (SQLException ex) {
-                ex.printStackTrace();
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
             return false;
         }
     }
 
-    // Existing analytics and markCompleted methods remain unchanged
-    // ⬇️ (no need to modify)
+    // This user's completion index, or null when disabled or it could not be loaded (reads then use SQL)
+    private CompletionIndex index() {
+        if (!COMPLETION_INDEX_ENABLED) return null;
+        try {
+            return CompletionIndex.forUser(userId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void wakeCalendarSync() {
+        if (CALENDAR_SYNC_ENABLED)
+            CalendarSyncWorker.getInstance().wakeUp();
+    }
 
+    @Override
     public Map<Integer, Boolean> getCompletionStatusForDay(LocalDate date) {
+        CompletionIndex index = index();
+        if (index != null) return index.getCompletionStatusForDay(date);
+
         Map<Integer, Boolean> status = new HashMap<>();
-        String sql = "SELECT habit_id, completed FROM habit_completion WHERE completion_date = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setDate(1, java.sql.Date.valueOf(date));
+        String sql = "SELECT habit_id, completed FROM habit_completion WHERE user_id = ? AND completion_date = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setDate(2, java.sql.Date.valueOf(date));
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     status.put(rs.getInt("habit_id"), rs.getBoolean("completed"));
@@ -182,76 +277,149 @@ public class HabitDAO {
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        // Toggles still waiting in the write-behind buffer win over what is in the table
+        status.putAll(writeBuffer.pendingForRange(userId, date, date).getOrDefault(date, Collections.emptyMap()));
         return status;
     }
 
-    public Map<LocalDate, Integer> getDailyCompletionCounts(LocalDate start, LocalDate end) {
-        Map<LocalDate, Integer> counts = new HashMap<>();
+    // Completion status for every day in [start, end] in one round-trip, grouped by date then habit id
+    @Override
+    public Map<LocalDate, Map<Integer, Boolean>> getCompletionStatusForRange(LocalDate start, LocalDate end) {
+        CompletionIndex index = index();
+        if (index != null) return index.getCompletionStatusForRange(start, end);
+
+        Map<LocalDate, Map<Integer, Boolean>> status = new HashMap<>();
         String sql = """
-        SELECT completion_date, COUNT(*) AS total
+        SELECT completion_date, habit_id, completed
         FROM habit_completion
-        WHERE completed = TRUE
-          AND completion_date BETWEEN ? AND ?
-        GROUP BY completion_date
+        WHERE user_id = ? AND completion_date BETWEEN ? AND ?
         ORDER BY completion_date
     """;
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setDate(1, java.sql.Date.valueOf(start));
-            stmt.setDate(2, java.sql.Date.valueOf(end));
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setDate(2, java.sql.Date.valueOf(start));
+            stmt.setDate(3, java.sql.Date.valueOf(end));
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    counts.put(rs.getDate("completion_date").toLocalDate(),
-                            rs.getInt("total"));
+                    status.computeIfAbsent(rs.getDate("completion_date").toLocalDate(), d -> new HashMap<>())
+                            .put(rs.getInt("habit_id"), rs.getBoolean("completed"));
                 }
             }
-        } catch (SQLException e) { e.printStackTrace(); }
-        return counts;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        writeBuffer.pendingForRange(userId, start, end).forEach((day, pending) ->
+                status.computeIfAbsent(day, d -> new HashMap<>()).putAll(pending));
+        return status;
+    }
+
+    // Repeated ranges are answered from the AnalyticsCache until a change touches them
+    @Override
+    public Map<LocalDate, Integer> getDailyCompletionCounts(LocalDate start, LocalDate end) {
+        try {
+            return analyticsCache.dailyCounts(userId, start, end, () -> loadDailyCompletionCounts(start, end));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
     }
 
+    @Override
     public Map<String, Integer> getHabitCompletionCounts(LocalDate start, LocalDate end) {
-        Map<String, Integer> counts = new HashMap<>();
-        String sql = """
-        SELECT h.name, COUNT(*) AS total
-        FROM habit_completion hc
-        JOIN habit h ON hc.habit_id = h.id
-        WHERE hc.completed = TRUE
-          AND hc.completion_date BETWEEN ? AND ?
-        GROUP BY h.name
-    """;
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setDate(1, java.sql.Date.valueOf(start));
-            stmt.setDate(2, java.sql.Date.valueOf(end));
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    counts.put(rs.getString("name"), rs.getInt("total"));
-                }
-            }
+        try {
+            return analyticsCache.habitCounts(userId, start, end, () -> loadHabitCompletionCounts(start, end));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+
+    // Without the index, ranges are read from the rollup tables, so year-long ranges stay cheap
+    private Map<LocalDate, Integer> loadDailyCompletionCounts(LocalDate start, LocalDate end) throws SQLException {
+        CompletionIndex index = index();
+        if (index != null) return index.getDailyCompletionCounts(start, end);
+
+        flushPendingCompletions();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return CompletionRollup.dailyCounts(conn, userId, start, end);
+        }
+    }
+
+    private Map<String, Integer> loadHabitCompletionCounts(LocalDate start, LocalDate end) throws SQLException {
+        CompletionIndex index = index();
+        if (index != null) return index.getHabitCompletionCounts(start, end);
+
+        flushPendingCompletions();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return CompletionRollup.habitCounts(conn, userId, start, end);
+        }
+    }
+
+    // Current/longest streak and rolling completion rates for every habit, as of today
+    @Override
+    public Map<Integer, HabitStreak> getStreaks() {
+        CompletionIndex index = index();
+        if (index != null) return index.getStreaks(LocalDate.now());
+
+        // Index turned off: build a throwaway one, which is still a single ordered scan
+        flushPendingCompletions();
+        CompletionIndex scan = new CompletionIndex();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            scan.load(conn, userId);
+        } catch (SQLException e) { e.printStackTrace(); }
+        return scan.getStreaks(LocalDate.now());
+    }
+
+    @Override
+    public HabitStreak getStreak(Habit habit) {
+        CompletionIndex index = index();
+        if (index != null) return index.getStreak(habit.getId(), LocalDate.now());
+
+        // Index turned off: read this habit's days only, not every habit's
+        flushPendingCompletions();
+        CompletionIndex scan = new CompletionIndex();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            scan.loadHabit(conn, userId, habit.getId(), habit.getName());
         } catch (SQLException e) { e.printStackTrace(); }
-        return counts;
+        return scan.getStreak(habit.getId(), LocalDate.now());
     }
 
+    // Queued and written in the background; see CompletionWriteBuffer
+    @Override
     public void markCompleted(Habit habit, LocalDate date, boolean completed) {
-        String check = "SELECT id FROM habit_completion WHERE habit_id = ? AND completion_date = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(check)) {
-            stmt.setInt(1, habit.getId());
-            stmt.setDate(2, java.sql.Date.valueOf(date));
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                String update = "UPDATE habit_completion SET completed = ? WHERE id = ?";
-                try (PreparedStatement upd = conn.prepareStatement(update)) {
-                    upd.setBoolean(1, completed);
-                    upd.setInt(2, rs.getInt("id"));
-                    upd.executeUpdate();
-                }
-            } else {
-                String insert = "INSERT INTO habit_completion(habit_id, completion_date, completed) VALUES (?, ?, ?)";
-                try (PreparedStatement ins = conn.prepareStatement(insert)) {
-                    ins.setInt(1, habit.getId());
-                    ins.setDate(2, java.sql.Date.valueOf(date));
-                    ins.setBoolean(3, completed);
-                    ins.executeUpdate();
-                }
+        CompletionIndex index = index();
+        if (index == null) {
+            writeBuffer.enqueue(userId, habit.getId(), date, completed);
+        } else {
+            // One step, so concurrent toggles of the same day leave the index and the queue agreeing on the last one
+            synchronized (index) {
+                index.setCompleted(habit.getId(), date, completed);
+                writeBuffer.enqueue(userId, habit.getId(), date, completed);
             }
+        }
+        analyticsCache.dateChanged(userId, date);
+    }
+
+    // Streams this user's habits and history to a .csv or .json file; see HabitDataTransfer for the formats
+    @Override
+    public HabitDataTransfer.Result exportData(Path file) throws IOException, SQLException {
+        writeBuffer.flush();
+        return new HabitDataTransfer(userId, CALENDAR_SYNC_ENABLED).export(file);
+    }
+
+    @Override
+    public HabitDataTransfer.Result importData(Path file) throws IOException, SQLException {
+        // Queued toggles go first so they cannot overwrite imported days afterwards
+        writeBuffer.flush();
+        return new HabitDataTransfer(userId, CALENDAR_SYNC_ENABLED).importFrom(file);
+    }
+
+    // Persists queued completion toggles now, e.g. before logout
+    @Override
+    public void flushPendingCompletions() {
+        try {
+            writeBuffer.flush();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,502 @@
+package org.habittracker.db;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.json.gson.GsonFactory;
+import org.habittracker.models.Habit;
+import org.habittracker.services.CalendarSyncWorker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bulk export and import of one user's habits and completion history.
+ *
+ * Both directions stream: export reads habit_completion through a
+ * forward-only cursor and writes each row as it arrives, import parses one
+ * record at a time and writes completions as batched upserts, committing every
+ * IMPORT_CHUNK rows. Memory use depends on the number of habits, not on the
+ * length of the history.
+ *
+ * CSV files have the header "habit,date,completed"; a row with an empty date
+ * only declares a habit. JSON files hold a "habits" array of {"name"} objects
+ * and a "completions" array of {"habit", "date", "completed"} objects.
+ * Habits are matched by name, and missing ones are created, so files written
+ * by hand or converted from other trackers import the same way.
+ *
+ * The JDBC backend streams straight from and to the tables. Other backends go
+ * through HabitRepository: export reads a year of completions at a time
+ * between GENERIC_EXPORT_START and a year from now, import adds habits and
+ * marks completions one by one.
+ */
+public class HabitDataTransfer {
+    private static final int IMPORT_CHUNK = 5_000;
+    private static final int EXPORT_FETCH_SIZE = 1_000;
+    private static final String CSV_HEADER = "habit,date,completed";
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    // Earliest day a repository export looks at; the JDBC export has no such limit
+    private static final LocalDate GENERIC_EXPORT_START = LocalDate.of(1900, 1, 1);
+
+    public enum Format {
+        CSV, JSON;
+
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".json")) return JSON;
+            throw new IllegalArgumentException("Unsupported file type: " + file.getFileName() + " (use .csv or .json)");
+        }
+    }
+
+    public record Result(int habits, long completions) {
+    }
+
+    private final int userId;
+    private final boolean calendarSync;
+
+    HabitDataTransfer(int userId, boolean calendarSync) {
+        this.userId = userId;
+        this.calendarSync = calendarSync;
+    }
+
+    // Callers flush the write buffer first so queued toggles are included
+    public Result export(Path file) throws IOException, SQLException {
+        Format format = Format.of(file);
+        try (Connection conn = DatabaseConnection.getConnection();
+             Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            List<String> habits = habitNames(conn);
+            return new Result(habits.size(), write(format, habits, writer -> streamCompletions(conn, writer), out));
+        }
+    }
+
+    // Export through the repository interface, for backends without tables to stream from
+    static Result export(HabitRepository repository, Path file) throws IOException, SQLException {
+        Format format = Format.of(file);
+        repository.flushPendingCompletions();
+        List<Habit> habits = repository.getAllHabits();
+        List<String> names = new ArrayList<>();
+        for (Habit habit : habits) names.add(habit.getName());
+        LocalDate last = LocalDate.now().plusYears(1);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long completions = write(format, names, writer -> {
+                long count = 0;
+                // A year at a time, so only one year of completions is held in memory
+                for (LocalDate from = GENERIC_EXPORT_START; !from.isAfter(last); from = from.plusYears(1)) {
+                    LocalDate to = from.plusYears(1).minusDays(1);
+                    Map<LocalDate, Map<Integer, Boolean>> days =
+                            new TreeMap<>(repository.getCompletionStatusForRange(from, to.isAfter(last) ? last : to));
+                    for (Map.Entry<LocalDate, Map<Integer, Boolean>> day : days.entrySet()) {
+                        for (Habit habit : habits) {
+                            Boolean completed = day.getValue().get(habit.getId());
+                            if (completed != null) {
+                                writer.write(habit.getName(), day.getKey(), completed);
+                                count++;
+                            }
+                        }
+                    }
+                }
+                return count;
+            }, out);
+            return new Result(habits.size(), completions);
+        }
+    }
+
+    private static long write(Format format, List<String> habits, CompletionSource source, Writer out)
+            throws SQLException, IOException {
+        return format == Format.CSV ? exportCsv(source, habits, out) : exportJson(source, habits, out);
+    }
+
+    private List<String> habitNames(Connection conn) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT name FROM habit WHERE user_id = ? ORDER BY id")) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) names.add(rs.getString("name"));
+            }
+        }
+        return names;
+    }
+
+    private interface RowWriter {
+        void write(String habit, LocalDate date, boolean completed) throws IOException;
+    }
+
+    // Hands every completion to the writer and returns how many there were
+    private interface CompletionSource {
+        long stream(RowWriter writer) throws SQLException, IOException;
+    }
+
+    // One parsed record; date is null for a record that only declares a habit
+    private interface RecordSink {
+        void add(String habit, String date, String completed, int position) throws IOException, SQLException;
+    }
+
+    // Rows are handed over one at a time as the cursor advances
+    private long streamCompletions(Connection conn, RowWriter writer) throws SQLException, IOException {
+        String sql = """
+                SELECT h.name, hc.completion_date, hc.completed
+                FROM habit_completion hc
+                JOIN habit h ON hc.habit_id = h.id
+                WHERE hc.user_id = ?
+                ORDER BY hc.habit_id, hc.completion_date
+                """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J only streams rows with this special value; otherwise it buffers the whole result
+            stmt.setFetchSize(DatabaseConnection.getDialect() == SqlDialect.MYSQL ? Integer.MIN_VALUE : EXPORT_FETCH_SIZE);
+            stmt.setInt(1, userId);
+            long count = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    writer.write(rs.getString(1), rs.getDate(2).toLocalDate(), rs.getBoolean(3));
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static long exportCsv(CompletionSource source, List<String> habits, Writer out) throws SQLException, IOException {
+        out.write(CSV_HEADER);
+        out.write('\n');
+        for (String habit : habits) {
+            out.write(csvField(habit));
+            out.write(",,\n");
+        }
+        return source.stream((habit, date, completed) -> {
+            out.write(csvField(habit));
+            out.write(',');
+            out.write(date.toString());
+            out.write(',');
+            out.write(Boolean.toString(completed));
+            out.write('\n');
+        });
+    }
+
+    private static long exportJson(CompletionSource source, List<String> habits, Writer out) throws SQLException, IOException {
+        JsonGenerator json = JSON_FACTORY.createJsonGenerator(out);
+        json.enablePrettyPrint();
+        json.writeStartObject();
+        json.writeFieldName("habits");
+        json.writeStartArray();
+        for (String habit : habits) {
+            json.writeStartObject();
+            json.writeFieldName("name");
+            json.writeString(habit);
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+
+        json.writeFieldName("completions");
+        json.writeStartArray();
+        long count = source.stream((habit, date, completed) -> {
+            json.writeStartObject();
+            json.writeFieldName("habit");
+            json.writeString(habit);
+            json.writeFieldName("date");
+            json.writeString(date.toString());
+            json.writeFieldName("completed");
+            json.writeBoolean(completed);
+            json.writeEndObject();
+        });
+        json.writeEndArray();
+        json.writeEndObject();
+        json.flush();
+        return count;
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // Existing completions for the same habit and day are overwritten
+    public Result importFrom(Path file) throws IOException, SQLException {
+        Format format = Format.of(file);
+        try (Connection conn = DatabaseConnection.getConnection();
+             BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Importer importer = new Importer(conn);
+            try {
+                read(format, in, importer);
+                importer.finish();
+            } catch (IOException | SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                importer.close();
+                refreshDerivedState(conn, importer.createdHabits);
+            }
+            return new Result(importer.createdHabits, importer.completions);
+        }
+    }
+
+    // Import through the repository interface; completions go through markCompleted like toggles do
+    static Result importInto(HabitRepository repository, Path file) throws IOException, SQLException {
+        Format format = Format.of(file);
+        RepositoryImporter importer = new RepositoryImporter(repository);
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            read(format, in, importer);
+        } finally {
+            // Records before a failure stay imported, as with the JDBC import
+            repository.flushPendingCompletions();
+        }
+        return new Result(importer.createdHabits, importer.completions);
+    }
+
+    private static void read(Format format, BufferedReader in, RecordSink sink) throws IOException, SQLException {
+        if (format == Format.CSV) {
+            importCsv(in, sink);
+        } else {
+            importJson(in, sink);
+        }
+    }
+
+    // Chunks committed before a failure stay imported, so this runs either way
+    private void refreshDerivedState(Connection conn, int createdHabits) throws SQLException {
+        try {
+            // One set-based recount is far cheaper than refreshing the rollups row by row
+            CompletionRollup.rebuild(conn, userId);
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+            CompletionIndex.evict(userId);
+            AnalyticsCache.getInstance().evictUser(userId);
+            if (calendarSync && createdHabits > 0)
+                CalendarSyncWorker.getInstance().wakeUp();
+        }
+    }
+
+    private static void importCsv(BufferedReader in, RecordSink importer) throws IOException, SQLException {
+        String line = in.readLine();
+        if (line != null && line.startsWith("\uFEFF")) line = line.substring(1); // BOM written by spreadsheet apps
+        if (line == null || !line.trim().equalsIgnoreCase(CSV_HEADER))
+            throw new IOException("Expected CSV header \"" + CSV_HEADER + "\"");
+
+        int lineNumber = 1;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            List<String> fields = parseCsvLine(line, lineNumber);
+            if (fields.size() < 2 || fields.size() > 3)
+                throw new IOException("Line " + lineNumber + ": expected habit,date[,completed]");
+            String completed = fields.size() == 3 ? fields.get(2).trim() : "";
+            importer.add(fields.get(0), fields.get(1).trim(), completed.isEmpty() ? null : completed, lineNumber);
+        }
+    }
+
+    private static List<String> parseCsvLine(String line, int lineNumber) throws IOException {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IOException("Line " + lineNumber + ": unterminated quote");
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void importJson(Reader in, RecordSink importer) throws IOException, SQLException {
+        JsonParser json = JSON_FACTORY.createJsonParser(in);
+        if (json.nextToken() != JsonToken.START_OBJECT)
+            throw new IOException("Expected a JSON object");
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String field = json.getCurrentName();
+            JsonToken value = json.nextToken();
+            if ((field.equals("habits") || field.equals("completions")) && value == JsonToken.START_ARRAY) {
+                int index = 0;
+                while (json.nextToken() == JsonToken.START_OBJECT) {
+                    Map<String, String> record = readFlatObject(json);
+                    index++;
+                    if (field.equals("habits")) {
+                        importer.add(record.get("name"), null, null, index);
+                    } else {
+                        importer.add(record.get("habit"), record.get("date"), record.get("completed"), index);
+                    }
+                }
+            } else {
+                json.skipChildren(); // unknown fields are ignored
+            }
+        }
+    }
+
+    // Scalar fields of the object the parser is positioned on; nested values are skipped
+    private static Map<String, String> readFlatObject(JsonParser json) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String name = json.getCurrentName();
+            JsonToken value = json.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                json.skipChildren();
+            } else if (value != JsonToken.VALUE_NULL) {
+                fields.put(name, json.getText());
+            }
+        }
+        return fields;
+    }
+
+    // Limited to the years a MySQL DATE column holds, so a typo cannot produce a row no backend can store
+    private static LocalDate parseDay(String date, int position) throws IOException {
+        LocalDate day;
+        try {
+            day = LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IOException("Record " + position + ": invalid date \"" + date + "\" (expected yyyy-MM-dd)");
+        }
+        if (day.getYear() < 1000 || day.getYear() > 9999)
+            throw new IOException("Record " + position + ": date " + date + " is outside the years 1000-9999");
+        return day;
+    }
+
+    // Files from other trackers often list completed days only
+    private static boolean parseCompleted(String completed) {
+        return completed == null || Boolean.parseBoolean(completed) || completed.equals("1");
+    }
+
+    private static String requireHabit(String habit, int position) throws IOException {
+        if (habit == null || habit.isBlank())
+            throw new IOException("Record " + position + ": missing habit name");
+        return habit.trim();
+    }
+
+    // Habits are looked up by name and created through the repository on first use
+    private static final class RepositoryImporter implements RecordSink {
+        private final HabitRepository repository;
+        private final Map<String, Habit> habits = new HashMap<>();
+        int createdHabits;
+        long completions;
+
+        RepositoryImporter(HabitRepository repository) {
+            this.repository = repository;
+            for (Habit habit : repository.getAllHabits()) habits.putIfAbsent(habit.getName(), habit);
+        }
+
+        @Override
+        public void add(String name, String date, String completed, int position) throws IOException {
+            Habit habit = habits.get(requireHabit(name, position));
+            if (habit == null) {
+                habit = new Habit(name.trim());
+                if (!repository.addHabit(habit))
+                    throw new IOException("Record " + position + ": could not add habit \"" + habit.getName() + "\"");
+                habits.put(habit.getName(), habit);
+                createdHabits++;
+            }
+            if (date == null || date.isEmpty()) return;
+
+            try {
+                repository.markCompleted(habit, parseDay(date, position), parseCompleted(completed));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Record " + position + ": " + e.getMessage());
+            }
+            completions++;
+        }
+    }
+
+    // Writes records in chunked transactions; habits are looked up by name and created on first use
+    private final class Importer implements RecordSink {
+        private final Connection conn;
+        private final Map<String, Integer> habitIds = new HashMap<>();
+        private final PreparedStatement insertHabit;
+        private final PreparedStatement upsert;
+        private int batched;
+        int createdHabits;
+        long completions;
+
+        Importer(Connection conn) throws SQLException {
+            this.conn = conn;
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT id, name FROM habit WHERE user_id = ?")) {
+                stmt.setInt(1, userId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) habitIds.putIfAbsent(rs.getString("name"), rs.getInt("id"));
+                }
+            }
+            insertHabit = conn.prepareStatement("INSERT INTO habit (user_id, name, google_event_id) VALUES (?, ?, NULL)",
+                    Statement.RETURN_GENERATED_KEYS);
+            upsert = conn.prepareStatement(CompletionWriteBuffer.upsertSql());
+        }
+
+        @Override
+        public void add(String habit, String date, String completed, int position) throws IOException, SQLException {
+            int habitId = habitId(requireHabit(habit, position));
+            if (date == null || date.isEmpty()) return;
+
+            upsert.setInt(1, userId);
+            upsert.setInt(2, habitId);
+            upsert.setDate(3, java.sql.Date.valueOf(parseDay(date, position)));
+            upsert.setBoolean(4, parseCompleted(completed));
+            upsert.addBatch();
+            completions++;
+            if (++batched == IMPORT_CHUNK) commitChunk();
+        }
+
+        private int habitId(String name) throws SQLException {
+            Integer id = habitIds.get(name);
+            if (id != null) return id;
+            insertHabit.setInt(1, userId);
+            insertHabit.setString(2, name);
+            insertHabit.executeUpdate();
+            try (ResultSet keys = insertHabit.getGeneratedKeys()) {
+                keys.next();
+                id = keys.getInt(1);
+            }
+            if (calendarSync)
+                CalendarOutbox.enqueue(conn, id, CalendarOutbox.Operation.CREATE, null);
+            habitIds.put(name, id);
+            createdHabits++;
+            return id;
+        }
+
+        private void commitChunk() throws SQLException {
+            if (batched > 0) upsert.executeBatch();
+            conn.commit();
+            batched = 0;
+        }
+
+        void finish() throws SQLException {
+            commitChunk();
+        }
+
+        void close() throws SQLException {
+            insertHabit.close();
+            upsert.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.habittracker.db;
+
+import org.habittracker.models.Habit;
+import org.habittracker.models.HabitStreak;
+import org.habittracker.utils.AppConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One user's habits and completion history, independent of where they are stored.
+ *
+ * STORAGE_BACKEND picks the implementation for the whole process:
+ *   jdbc    HabitDAO on DB_URL, MySQL or H2 (default)
+ *   local   LocalHabitStore, a memory-mapped file per user, no database server
+ *   memory  InMemoryHabitRepository, nothing persisted; for load tests and demos
+ *
+ * User accounts always live in the DB_URL database.
+ */
+public interface HabitRepository {
+
+    static HabitRepository forUser(int userId) {
+        String backend = AppConfig.get("STORAGE_BACKEND", "jdbc");
+        return switch (backend.toLowerCase()) {
+            case "jdbc" -> new HabitDAO(userId);
+            case "local" -> {
+                try {
+                    yield LocalHabitStore.forUser(userId);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not open local habit storage", e);
+                }
+            }
+            case "memory" -> InMemoryHabitRepository.forUser(userId);
+            default -> throw new IllegalArgumentException("Unknown STORAGE_BACKEND: " + backend);
+        };
+    }
+
+    // Frees what forUser keeps open for the user; their next forUser opens it again
+    static void release(int userId) {
+        switch (AppConfig.get("STORAGE_BACKEND", "jdbc").toLowerCase()) {
+            case "jdbc" -> CompletionIndex.evict(userId);
+            case "local" -> LocalHabitStore.closeUser(userId);
+            default -> {
+                // The in-memory repository is the only copy of the user's data
+            }
+        }
+    }
+
+    List<Habit> getAllHabits();
+
+    // The user's habit with this id, or null if they have none; a single lookup, unlike getAllHabits
+    Habit findHabit(int habitId);
+
+    // Sets the habit's id on success
+    boolean addHabit(Habit habit);
+
+    boolean updateHabit(Habit habit, String newName);
+
+    boolean deleteHabit(Habit habit);
+
+    Map<Integer, Boolean> getCompletionStatusForDay(LocalDate date);
+
+    Map<LocalDate, Map<Integer, Boolean>> getCompletionStatusForRange(LocalDate start, LocalDate end);
+
+    // Number of completed habits per day in [start, end]; days without any are left out
+    Map<LocalDate, Integer> getDailyCompletionCounts(LocalDate start, LocalDate end);
+
+    // Completed days per habit name in [start, end]
+    Map<String, Integer> getHabitCompletionCounts(LocalDate start, LocalDate end);
+
+    Map<Integer, HabitStreak> getStreaks();
+
+    HabitStreak getStreak(Habit habit);
+
+    void markCompleted(Habit habit, LocalDate date, boolean completed);
+
+    // Makes completions marked so far durable, e.g. before logout
+    void flushPendingCompletions();
+
+    // Writes this user's habits and history to a .csv or .json file; see HabitDataTransfer for the formats
+    default HabitDataTransfer.Result exportData(Path file) throws IOException, SQLException {
+        return HabitDataTransfer.export(this, file);
+    }
+
+    // Adds the habits and completions in a .csv or .json file; existing days are overwritten
+    default HabitDataTransfer.Result importData(Path file) throws IOException, SQLException {
+        return HabitDataTransfer.importInto(this, file);
+    }
+}
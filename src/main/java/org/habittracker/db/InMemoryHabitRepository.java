@@ -0,0 +1,108 @@
+package org.habittracker.db;
+
+import org.habittracker.models.Habit;
+import org.habittracker.models.HabitStreak;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Habits kept only in a CompletionIndex, lost when the process exits.
+ *
+ * Has no I/O at all, which makes it the baseline for load tests: whatever a
+ * run measures on top of this backend is the app's own overhead.
+ */
+public class InMemoryHabitRepository implements HabitRepository {
+    private static final Map<Integer, InMemoryHabitRepository> BY_USER = new HashMap<>();
+
+    private final TreeMap<Integer, String> names = new TreeMap<>();
+    private final CompletionIndex index = new CompletionIndex();
+    private int nextHabitId = 1;
+
+    // Shared by all of a user's DAOs, like the other backends' data
+    public static synchronized InMemoryHabitRepository forUser(int userId) {
+        return BY_USER.computeIfAbsent(userId, id -> new InMemoryHabitRepository());
+    }
+
+    @Override
+    public List<Habit> getAllHabits() {
+        List<Habit> habits = new ArrayList<>();
+        synchronized (this) {
+            names.forEach((id, name) -> habits.add(new Habit(id, name, false)));
+        }
+        return habits;
+    }
+
+    @Override
+    public synchronized Habit findHabit(int habitId) {
+        String name = names.get(habitId);
+        return name == null ? null : new Habit(habitId, name, false);
+    }
+
+    @Override
+    public synchronized boolean addHabit(Habit habit) {
+        habit.setId(nextHabitId++);
+        names.put(habit.getId(), habit.getName());
+        index.putHabit(habit.getId(), habit.getName());
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updateHabit(Habit habit, String newName) {
+        if (!names.containsKey(habit.getId())) return false;
+        names.put(habit.getId(), newName);
+        index.putHabit(habit.getId(), newName);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteHabit(Habit habit) {
+        if (names.remove(habit.getId()) == null) return false;
+        index.removeHabit(habit.getId());
+        return true;
+    }
+
+    @Override
+    public Map<Integer, Boolean> getCompletionStatusForDay(LocalDate date) {
+        return index.getCompletionStatusForDay(date);
+    }
+
+    @Override
+    public Map<LocalDate, Map<Integer, Boolean>> getCompletionStatusForRange(LocalDate start, LocalDate end) {
+        return index.getCompletionStatusForRange(start, end);
+    }
+
+    @Override
+    public Map<LocalDate, Integer> getDailyCompletionCounts(LocalDate start, LocalDate end) {
+        return index.getDailyCompletionCounts(start, end);
+    }
+
+    @Override
+    public Map<String, Integer> getHabitCompletionCounts(LocalDate start, LocalDate end) {
+        return index.getHabitCompletionCounts(start, end);
+    }
+
+    @Override
+    public Map<Integer, HabitStreak> getStreaks() {
+        return index.getStreaks(LocalDate.now());
+    }
+
+    @Override
+    public HabitStreak getStreak(Habit habit) {
+        return index.getStreak(habit.getId(), LocalDate.now());
+    }
+
+    @Override
+    public synchronized void markCompleted(Habit habit, LocalDate date, boolean completed) {
+        if (names.containsKey(habit.getId())) index.setCompleted(habit.getId(), date, completed);
+    }
+
+    @Override
+    public void flushPendingCompletions() {
+        // Nothing to persist
+    }
+}
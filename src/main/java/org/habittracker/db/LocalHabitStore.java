@@ -0,0 +1,454 @@
+package org.habittracker.db;
+
+import org.habittracker.models.Habit;
+import org.habittracker.models.HabitStreak;
+import org.habittracker.utils.AppConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * One user's habits and completion history in a single memory-mapped file,
+ * for running without a database server.
+ *
+ * The file is a 16-byte header followed by fixed-width records, each carrying
+ * a CRC32C of its contents:
+ *   HABIT       272 bytes            habit id and name (up to 256 UTF-8 bytes), added/renamed or deleted
+ *   COMPLETION   16 bytes            habit id, epoch day and completed flag
+ *   BITMAP       24 + 8 * n bytes    a habit's completed days as n words starting at a base day
+ *
+ * Changes are only ever appended. Opening replays the records into a
+ * CompletionIndex, which then answers every read, and stops at the first
+ * record that is incomplete or fails its checksum, so a crash mid-write loses
+ * at most that write. Compaction writes one HABIT and BITMAP pair per live
+ * habit to a temporary file and atomically renames it over the old one.
+ *
+ * The file is locked while open, so a second app instance fails fast instead
+ * of corrupting it. Calendar sync is not available in local mode.
+ */
+public class LocalHabitStore implements HabitRepository, Closeable {
+    private static final int MAGIC = 0x4854444C; // "HTDL"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final byte HABIT = 1;
+    private static final byte COMPLETION = 2;
+    private static final byte BITMAP = 3;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int NAME_BYTES = 256;
+    private static final int HABIT_SIZE = 272;
+    private static final int COMPLETION_SIZE = 16;
+    private static final int BITMAP_HEADER_SIZE = 24;
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+    // The log may grow to this, or to the size of the compacted state, before it is compacted again
+    private static final int COMPACT_MIN_BYTES = 1024 * 1024;
+
+    private static final Map<Integer, LocalHabitStore> BY_USER = new HashMap<>();
+
+    private final Path file;
+    private FileChannel channel;
+    private FileLock fileLock;
+    private MappedByteBuffer map;
+    private int end;
+    private int compactedEnd;
+    private int nextHabitId = 1;
+
+    private final TreeMap<Integer, String> names = new TreeMap<>();
+    private final CompletionIndex index = new CompletionIndex();
+
+    // The user's store under LOCAL_STORE_DIR, opened on first use and shared by all of their DAOs
+    public static synchronized LocalHabitStore forUser(int userId) throws IOException {
+        LocalHabitStore store = BY_USER.get(userId);
+        if (store == null) {
+            Path dir = Path.of(AppConfig.get("LOCAL_STORE_DIR",
+                    Path.of(System.getProperty("user.home"), ".habit-tracker").toString()));
+            store = open(dir.resolve("habits-" + userId + ".htdl"));
+            BY_USER.put(userId, store);
+        }
+        return store;
+    }
+
+    // Flushes and closes the user's store if it is open
+    public static synchronized void closeUser(int userId) {
+        LocalHabitStore store = BY_USER.remove(userId);
+        if (store == null) return;
+        try {
+            store.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Flushes and closes every open store, on application exit
+    public static synchronized void closeAll() {
+        for (LocalHabitStore store : BY_USER.values()) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        BY_USER.clear();
+    }
+
+    public static LocalHabitStore open(Path file) throws IOException {
+        LocalHabitStore store = new LocalHabitStore(file);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private LocalHabitStore(Path file) {
+        this.file = file;
+    }
+
+    private void load() throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        // Left behind by a compaction that did not finish; the original file is still intact
+        Files.deleteIfExists(compactionFile());
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Already open in this process, outside forUser()
+            fileLock = null;
+        }
+        if (fileLock == null)
+            throw new IOException(file + " is in use by another Habit Tracker instance");
+
+        boolean created = channel.size() == 0;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_SIZE));
+        if (created) {
+            writeHeader(map, 1);
+        } else if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a Habit Tracker data file of version " + VERSION);
+        }
+        nextHabitId = Math.max(1, map.getInt(8));
+
+        int pos = HEADER_SIZE;
+        int length;
+        while ((length = replay(pos)) > 0) {
+            pos += length;
+        }
+        end = pos;
+        // Clear whatever a torn write left behind so later appends start from zeros
+        for (int i = end; i < Math.min(map.capacity(), end + HABIT_SIZE); i++) map.put(i, (byte) 0);
+        compactedEnd = end;
+
+        if (end - HEADER_SIZE > COMPACT_MIN_BYTES && end > 2 * liveSize()) compact();
+    }
+
+    // Applies the record at pos and returns its length, or 0 at the end of the valid log
+    private int replay(int pos) {
+        if (pos + COMPLETION_SIZE > map.capacity()) return 0;
+        switch (map.get(pos)) {
+            case HABIT -> {
+                if (pos + HABIT_SIZE > map.capacity() || !checksumMatches(pos, HABIT_SIZE)) return 0;
+                int habitId = map.getInt(pos + 4);
+                if (map.get(pos + 1) == DELETE) {
+                    names.remove(habitId);
+                    index.removeHabit(habitId);
+                } else {
+                    byte[] name = new byte[map.getShort(pos + 2)];
+                    map.get(pos + 8, name);
+                    String decoded = new String(name, StandardCharsets.UTF_8);
+                    names.put(habitId, decoded);
+                    index.putHabit(habitId, decoded);
+                }
+                nextHabitId = Math.max(nextHabitId, habitId + 1);
+                return HABIT_SIZE;
+            }
+            case COMPLETION -> {
+                if (!checksumMatches(pos, COMPLETION_SIZE)) return 0;
+                int habitId = map.getInt(pos + 4);
+                if (names.containsKey(habitId))
+                    index.setCompleted(habitId, LocalDate.ofEpochDay(map.getInt(pos + 8)), map.get(pos + 1) != 0);
+                return COMPLETION_SIZE;
+            }
+            case BITMAP -> {
+                int words = map.getInt(pos + 16);
+                long size = BITMAP_HEADER_SIZE + 8L * words;
+                if (words < 0 || pos + size > map.capacity() || !checksumMatches(pos, (int) size)) return 0;
+                long[] bits = new long[words];
+                map.slice(pos + BITMAP_HEADER_SIZE, 8 * words).asLongBuffer().get(bits);
+                index.putBits(map.getInt(pos + 4), map.getLong(pos + 8), bits);
+                return (int) size;
+            }
+            default -> {
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public List<Habit> getAllHabits() {
+        List<Habit> habits = new ArrayList<>();
+        synchronized (this) {
+            names.forEach((id, name) -> habits.add(new Habit(id, name, false)));
+        }
+        return habits;
+    }
+
+    @Override
+    public synchronized Habit findHabit(int habitId) {
+        String name = names.get(habitId);
+        return name == null ? null : new Habit(habitId, name, false);
+    }
+
+    @Override
+    public synchronized boolean addHabit(Habit habit) {
+        byte[] name = encodeName(habit.getName());
+        if (name == null) return false;
+        int habitId = nextHabitId;
+        if (!append(buffer -> putHabit(buffer, end, PUT, habitId, name), HABIT_SIZE)) return false;
+        nextHabitId++;
+        habit.setId(habitId);
+        names.put(habitId, habit.getName());
+        index.putHabit(habitId, habit.getName());
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updateHabit(Habit habit, String newName) {
+        byte[] name = encodeName(newName);
+        if (name == null || !names.containsKey(habit.getId())) return false;
+        if (!append(buffer -> putHabit(buffer, end, PUT, habit.getId(), name), HABIT_SIZE)) return false;
+        names.put(habit.getId(), newName);
+        index.putHabit(habit.getId(), newName);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteHabit(Habit habit) {
+        if (!names.containsKey(habit.getId())) return false;
+        if (!append(buffer -> putHabit(buffer, end, DELETE, habit.getId(), new byte[0]), HABIT_SIZE)) return false;
+        names.remove(habit.getId());
+        index.removeHabit(habit.getId());
+        return true;
+    }
+
+    @Override
+    public synchronized void markCompleted(Habit habit, LocalDate date, boolean completed) {
+        if (!names.containsKey(habit.getId()) || index.isCompleted(habit.getId(), date) == completed) return;
+        if (append(buffer -> putCompletion(buffer, end, habit.getId(), date, completed), COMPLETION_SIZE))
+            index.setCompleted(habit.getId(), date, completed);
+    }
+
+    @Override
+    public Map<Integer, Boolean> getCompletionStatusForDay(LocalDate date) {
+        return index.getCompletionStatusForDay(date);
+    }
+
+    @Override
+    public Map<LocalDate, Map<Integer, Boolean>> getCompletionStatusForRange(LocalDate start, LocalDate end) {
+        return index.getCompletionStatusForRange(start, end);
+    }
+
+    @Override
+    public Map<LocalDate, Integer> getDailyCompletionCounts(LocalDate start, LocalDate end) {
+        return index.getDailyCompletionCounts(start, end);
+    }
+
+    @Override
+    public Map<String, Integer> getHabitCompletionCounts(LocalDate start, LocalDate end) {
+        return index.getHabitCompletionCounts(start, end);
+    }
+
+    @Override
+    public Map<Integer, HabitStreak> getStreaks() {
+        return index.getStreaks(LocalDate.now());
+    }
+
+    @Override
+    public HabitStreak getStreak(Habit habit) {
+        return index.getStreak(habit.getId(), LocalDate.now());
+    }
+
+    // Writes mapped pages to disk; appends already survive a crash of the app, this covers the OS
+    @Override
+    public synchronized void flushPendingCompletions() {
+        if (map != null) map.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        try {
+            if (map != null) map.force();
+        } finally {
+            // Also releases the file lock
+            channel.close();
+            channel = null;
+            map = null;
+        }
+    }
+
+    private interface RecordWriter {
+        void write(ByteBuffer buffer);
+    }
+
+    private boolean append(RecordWriter writer, int size) {
+        try {
+            if (end + size > map.capacity()) grow(end + size);
+            writer.write(map);
+            end += size;
+            if (end - compactedEnd > Math.max(COMPACT_MIN_BYTES, compactedEnd)) compact();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("⚠️ Could not write to " + file);
+            return false;
+        }
+    }
+
+    private void grow(int needed) throws IOException {
+        long capacity = map.capacity();
+        while (capacity < needed) capacity *= 2;
+        if (capacity > Integer.MAX_VALUE) throw new IOException(file + " is full");
+        map.force();
+        // Mapping past the end extends the file with zeros
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private byte[] encodeName(String name) {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > NAME_BYTES) {
+            System.err.println("⚠️ Habit name is too long for local storage: " + name);
+            return null;
+        }
+        return encoded;
+    }
+
+    // Bytes a compacted file would take
+    private int liveSize() throws IOException {
+        long[] size = {HEADER_SIZE};
+        index.forEachHabit((habitId, name, base, words) ->
+                size[0] += HABIT_SIZE + BITMAP_HEADER_SIZE + 8L * words.length);
+        return (int) Math.min(size[0], Integer.MAX_VALUE);
+    }
+
+    /*
+     * The new file is written and locked through its own channel, forced to
+     * disk and only then renamed over the old one, so at every point either the
+     * old or the new file is complete. Windows refuses to replace a file that
+     * is still mapped; compaction then waits until the next time the store is
+     * opened, when it runs before mapping.
+     */
+    private void compact() throws IOException {
+        Path target = compactionFile();
+        ByteBuffer buffer = ByteBuffer.allocate(liveSize());
+        writeHeader(buffer, nextHabitId);
+        int[] pos = {HEADER_SIZE};
+        index.forEachHabit((habitId, name, base, words) -> {
+            putHabit(buffer, pos[0], PUT, habitId, name.getBytes(StandardCharsets.UTF_8));
+            pos[0] += HABIT_SIZE;
+            putBitmap(buffer, pos[0], habitId, base, words);
+            pos[0] += BITMAP_HEADER_SIZE + 8 * words.length;
+        });
+
+        FileChannel compacted = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock compactedLock = compacted.lock();
+            buffer.rewind();
+            while (buffer.hasRemaining()) compacted.write(buffer);
+            compacted.force(true);
+            Files.move(target, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            fileLock = compactedLock;
+        } catch (IOException e) {
+            compacted.close();
+            Files.deleteIfExists(target);
+            compactedEnd = end;
+            System.err.println("⚠️ Compaction of " + file + " postponed: " + e.getMessage());
+            return;
+        }
+
+        channel.close();
+        channel = compacted;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, (long) pos[0] * 2));
+        end = pos[0];
+        compactedEnd = end;
+    }
+
+    private Path compactionFile() {
+        return file.resolveSibling(file.getFileName() + ".compact");
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int nextHabitId) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, nextHabitId);
+    }
+
+    private static void putHabit(ByteBuffer buffer, int pos, byte op, int habitId, byte[] name) {
+        buffer.put(pos, HABIT);
+        buffer.put(pos + 1, op);
+        buffer.putShort(pos + 2, (short) name.length);
+        buffer.putInt(pos + 4, habitId);
+        buffer.put(pos + 8, name);
+        for (int i = pos + 8 + name.length; i < pos + HABIT_SIZE - 4; i++) buffer.put(i, (byte) 0);
+        buffer.putInt(pos + HABIT_SIZE - 4, checksum(buffer, pos, HABIT_SIZE));
+    }
+
+    private static void putCompletion(ByteBuffer buffer, int pos, int habitId, LocalDate date, boolean completed) {
+        buffer.put(pos, COMPLETION);
+        buffer.put(pos + 1, (byte) (completed ? 1 : 0));
+        buffer.putShort(pos + 2, (short) 0);
+        buffer.putInt(pos + 4, habitId);
+        buffer.putInt(pos + 8, (int) date.toEpochDay());
+        buffer.putInt(pos + COMPLETION_SIZE - 4, checksum(buffer, pos, COMPLETION_SIZE));
+    }
+
+    // The checksum sits in the fixed header (bytes 20-23) and also covers the words after it
+    private static void putBitmap(ByteBuffer buffer, int pos, int habitId, long base, long[] words) {
+        buffer.put(pos, BITMAP);
+        buffer.put(pos + 1, (byte) 0);
+        buffer.putShort(pos + 2, (short) 0);
+        buffer.putInt(pos + 4, habitId);
+        buffer.putLong(pos + 8, base);
+        buffer.putInt(pos + 16, words.length);
+        buffer.slice(pos + BITMAP_HEADER_SIZE, 8 * words.length).asLongBuffer().put(words);
+        buffer.putInt(pos + 20, checksum(buffer, pos, BITMAP_HEADER_SIZE + 8 * words.length));
+    }
+
+    private boolean checksumMatches(int pos, int size) {
+        int stored = map.getInt(map.get(pos) == BITMAP ? pos + 20 : pos + size - 4);
+        return stored == checksum(map, pos, size);
+    }
+
+    // CRC32C of a record without its checksum field
+    private static int checksum(ByteBuffer buffer, int pos, int size) {
+        CRC32C crc = new CRC32C();
+        if (buffer.get(pos) == BITMAP) {
+            crc.update(buffer.slice(pos, 20));
+            crc.update(buffer.slice(pos + BITMAP_HEADER_SIZE, size - BITMAP_HEADER_SIZE));
+        } else {
+            crc.update(buffer.slice(pos, size - 4));
+        }
+        return (int) crc.getValue();
+    }
+}
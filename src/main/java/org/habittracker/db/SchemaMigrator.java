@@ -0,0 +1,158 @@
+package org.habittracker.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings the schema up to date from the versioned scripts under
+ * /db/migration/{mysql,h2}, once per process.
+ *
+ * Applied versions are recorded in schema_version with a checksum of the
+ * script; a script that changed after it was applied stops the migration
+ * rather than leaving the schema in an unknown state. Scripts are written to
+ * be re-runnable, so databases created before this table existed are brought
+ * in line by simply running all of them.
+ */
+public class SchemaMigrator {
+
+    // In order; a new migration is a new script appended here, never an edit to an applied one
+    private static final String[] MIGRATIONS = {
+            "V1__baseline",
+            "V2__completion_day_key",
+            "V3__calendar_outbox",
+            "V4__user_partitioning",
+            "V5__completion_rollups",
+            "V6__user_constraints",
+    };
+
+    private static volatile boolean migrated;
+
+    private SchemaMigrator() {
+    }
+
+    // Cheap after the first call, so DAOs can call it on construction
+    public static void migrate() throws SQLException {
+        if (migrated) return;
+        synchronized (SchemaMigrator.class) {
+            if (migrated) return;
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                run(conn, DatabaseConnection.getDialect());
+                warnAboutUnownedHabits(conn);
+            }
+            migrated = true;
+        }
+    }
+
+    private static void run(Connection conn, SqlDialect dialect) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INT PRIMARY KEY,
+                        description VARCHAR(255) NOT NULL,
+                        checksum VARCHAR(64) NOT NULL,
+                        installed_at TIMESTAMP NOT NULL
+                    )
+                    """);
+        }
+
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+
+        String folder = dialect == SqlDialect.H2 ? "h2" : "mysql";
+        for (String name : MIGRATIONS) {
+            int version = Integer.parseInt(name.substring(1, name.indexOf("__")));
+            String script = readScript("/db/migration/" + folder + "/" + name + ".sql");
+            String checksum = checksum(script);
+
+            String appliedChecksum = applied.get(version);
+            if (appliedChecksum != null) {
+                if (!appliedChecksum.equals(checksum))
+                    throw new SQLException("Migration " + name + " was changed after it was applied");
+                continue;
+            }
+
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : splitStatements(script)) {
+                    stmt.execute(sql);
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, description, checksum, installed_at) VALUES (?, ?, ?, ?)")) {
+                stmt.setInt(1, version);
+                stmt.setString(2, name.substring(name.indexOf("__") + 2).replace('_', ' '));
+                stmt.setString(3, checksum);
+                stmt.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                stmt.executeUpdate();
+            }
+            System.out.println("✅ Applied migration " + name);
+        }
+    }
+
+    // Rows from before V4 are not given to anyone automatically, see AssignLegacyHabits
+    private static void warnAboutUnownedHabits(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM habit WHERE user_id IS NULL")) {
+            if (rs.next() && rs.getInt(1) > 0) {
+                System.err.println("⚠️ " + rs.getInt(1) + " habits from before user accounts have no owner and are hidden;"
+                        + " assign them with org.habittracker.utils.AssignLegacyHabits <username>");
+            }
+        }
+    }
+
+    private static String readScript(String path) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(path)) {
+            if (in == null) throw new SQLException("Migration script not found: " + path);
+            // Line endings are normalized so a checkout on another OS does not change the checksum
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration script " + path, e);
+        }
+    }
+
+    private static String checksum(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(script.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Statements end with ';' at the end of a line; whole-line "--" comments are dropped
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+            if (trimmed.endsWith(";")) {
+                current.append(trimmed, 0, trimmed.length() - 1);
+                statements.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(trimmed).append('\n');
+            }
+        }
+        if (!current.toString().isBlank()) statements.add(current.toString());
+        return statements;
+    }
+}
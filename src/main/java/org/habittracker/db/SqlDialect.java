@@ -0,0 +1,14 @@
+package org.habittracker.db;
+
+// SQL flavours the DAOs know how to talk to, picked from the JDBC URL
+public enum SqlDialect {
+    MYSQL,
+    H2;
+
+    public static SqlDialect fromUrl(String url) {
+        if (url != null && url.startsWith("jdbc:h2:")) {
+            return H2;
+        }
+        return MYSQL;
+    }
+}
@@ -0,0 +1,98 @@
+package org.habittracker.db;
+
+import org.habittracker.models.User;
+import org.habittracker.utils.AppConfig;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of username lookups, including the ones that found nothing.
+ *
+ * Caching misses lets the signup form check a name on every edit without a
+ * query each time. Entries expire after USER_CACHE_TTL_MS, which bounds how
+ * stale an account created or changed by another process can look; changes
+ * made through UserRepository update the cache right away. USER_CACHE_SIZE=0
+ * turns it off.
+ */
+public class UserCache {
+
+    private static final UserCache INSTANCE = new UserCache(
+            AppConfig.getInt("USER_CACHE_SIZE", 1000),
+            AppConfig.getLong("USER_CACHE_TTL_MS", 60_000));
+
+    public static UserCache getInstance() {
+        return INSTANCE;
+    }
+
+    // user is null for a name that does not exist
+    private record Entry(User user, long expiresAt) {
+    }
+
+    public record CacheStats(int size, long hits, long misses) {
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        User load() throws SQLException;
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+    // Bumped on every invalidation; a load that raced with one is returned but not stored
+    private long generation;
+    private long hits;
+    private long misses;
+
+    UserCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > UserCache.this.maxEntries;
+            }
+        };
+    }
+
+    public User get(String username, Loader loader) throws SQLException {
+        if (maxEntries <= 0) return loader.load();
+
+        long seenGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(username);
+            if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+                hits++;
+                return entry.user();
+            }
+            misses++;
+            seenGeneration = generation;
+        }
+
+        // Loaded outside the lock so a slow query does not hold up other lookups
+        User loaded = loader.load();
+        synchronized (this) {
+            if (generation == seenGeneration) {
+                entries.put(username, new Entry(loaded, System.nanoTime() + ttlNanos));
+            }
+        }
+        return loaded;
+    }
+
+    // Drops cached lookups of this name; case-insensitive, since MySQL compares usernames that way
+    public synchronized void usernameChanged(String username) {
+        generation++;
+        entries.keySet().removeIf(name -> name.equalsIgnoreCase(username));
+    }
+
+    public synchronized void userChanged(int userId) {
+        generation++;
+        entries.values().removeIf(entry -> entry.user() != null && entry.user().getId() == userId);
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(entries.size(), hits, misses);
+    }
+}
@@ -6,46 +6,94 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
 
 public class UserRepository {
+    private final UserCache userCache = UserCache.getInstance();
 
-    // Save a new user
-    public boolean saveUser(User user) {
+    public UserRepository() {
+        try {
+            SchemaMigrator.migrate();
+        } catch (SQLException e) {
+            System.err.println("Error while preparing the database: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Inserts a new user and returns it with its id, or null if the username is taken.
+    // The unique constraint on username decides, so there is no separate lookup to race with.
+    public User saveUser(User user) {
         String sql = "INSERT INTO users(username, password) VALUES(?, ?)";
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, user.getUsername());
             stmt.setString(2, user.getPassword()); // already hashed by AuthService
 
-            return stmt.executeUpdate() > 0;
+            stmt.executeUpdate();
+            // A cached "no such user" for this name is now wrong
+            userCache.usernameChanged(user.getUsername());
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) return null;
+                return new User(keys.getInt(1), user.getUsername(), user.getPassword());
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return null;
         } catch (SQLException e) {
             System.err.println("Error while saving user: " + e.getMessage());
             e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Replaces a stored password, e.g. a plain-text one with its hash
+    public boolean updatePassword(int userId, String password) {
+        String sql = "UPDATE users SET password = ? WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, password);
+            stmt.setInt(2, userId);
+            boolean updated = stmt.executeUpdate() > 0;
+            userCache.userChanged(userId);
+            return updated;
+        } catch (SQLException e) {
+            System.err.println("Error while updating password: " + e.getMessage());
+            e.printStackTrace();
             return false;
         }
     }
 
-    // Find user by username
+    // Find user by username; served from the UserCache when it was looked up recently
     public User findUserByUsername(String username) {
-        String sql = "SELECT * FROM users WHERE username = ?";
+        try {
+            return userCache.get(username, () -> loadUser(username));
+        } catch (SQLException e) {
+            System.err.println("Error while finding user: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private User loadUser(String username) throws SQLException {
+        String sql = "SELECT id, username, password FROM users WHERE username = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, username);
 
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                // Return user with stored plain  text password
-                return new User(
-                        rs.getString("username"),
-                        rs.getString("password")
-                );
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    // Password as stored: a hash, or plain text for accounts not yet upgraded
+                    return new User(
+                            rs.getInt("id"),
+                            rs.getString("username"),
+                            rs.getString("password")
+                    );
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("Error while finding user: " + e.getMessage());
-            e.printStackTrace();
         }
         return null;
     }
-}
\ No newline at end of file
+}
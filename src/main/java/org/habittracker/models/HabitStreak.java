@@ -0,0 +1,32 @@
+package org.habittracker.models;
+
+public class HabitStreak {
+    private final int habitId;
+    private final String habitName;
+    private final int currentStreak;
+    private final int longestStreak;
+    // Share of days completed in the last 7/30/365 days, 0.0 - 1.0
+    private final double last7DaysRate;
+    private final double last30DaysRate;
+    private final double last365DaysRate;
+
+    public HabitStreak(int habitId, String habitName, int currentStreak, int longestStreak,
+                       double last7DaysRate, double last30DaysRate, double last365DaysRate) {
+        this.habitId = habitId;
+        this.habitName = habitName;
+        this.currentStreak = currentStreak;
+        this.longestStreak = longestStreak;
+        this.last7DaysRate = last7DaysRate;
+        this.last30DaysRate = last30DaysRate;
+        this.last365DaysRate = last365DaysRate;
+    }
+
+    // Getters
+    public int getHabitId() { return habitId; }
+    public String getHabitName() { return habitName; }
+    public int getCurrentStreak() { return currentStreak; }
+    public int getLongestStreak() { return longestStreak; }
+    public double getLast7DaysRate() { return last7DaysRate; }
+    public double getLast30DaysRate() { return last30DaysRate; }
+    public double getLast365DaysRate() { return last365DaysRate; }
+}
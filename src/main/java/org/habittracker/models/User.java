@@ -1,6 +1,7 @@
 package org.habittracker.models;
 
 public class User {
+    private int id;
     private String username;
     private String password;
 
@@ -9,6 +10,16 @@ public class User {
         this.password = password;
     }
 
+    public User(int id, String username, String password) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+    }
+
+    public int getId() {
+        return id;
+    }
+
     public String getUsername() {
         return username;
     }
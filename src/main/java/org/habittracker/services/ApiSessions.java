@@ -0,0 +1,61 @@
+package org.habittracker.services;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bearer tokens of logged-in API clients, the server-mode counterpart of
+ * UserSession. Tokens are random, kept only in memory and expire ttlMillis
+ * after they were issued; restarting the server logs every client out.
+ */
+public class ApiSessions {
+    private static final int TOKEN_BYTES = 32;
+    // Expired tokens are dropped on lookup, and all of them every this many logins
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private record Session(int userId, long expiresAt) {
+    }
+
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final long ttlNanos;
+
+    public ApiSessions(long ttlMillis) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public String create(int userId) {
+        if (created.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            long now = System.nanoTime();
+            sessions.values().removeIf(session -> session.expiresAt() - now <= 0);
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(userId, System.nanoTime() + ttlNanos));
+        return token;
+    }
+
+    // The token's user, or -1 if the token is unknown or expired
+    public int userId(String token) {
+        Session session = sessions.get(token);
+        if (session == null) return -1;
+        if (session.expiresAt() - System.nanoTime() <= 0) {
+            sessions.remove(token, session);
+            return -1;
+        }
+        return session.userId();
+    }
+
+    public void remove(String token) {
+        sessions.remove(token);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -2,29 +2,164 @@ package org.habittracker.services;
 
 import org.habittracker.db.UserRepository;
 import org.habittracker.models.User;
+import org.habittracker.utils.UserSession;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sign-up and login against the users table. Passwords are stored as
+ * PasswordHasher hashes; accounts still holding a plain-text password get it
+ * replaced by a hash on their next successful login.
+ *
+ * The async variants keep the FX thread free: database calls run on virtual
+ * threads and hashing on the PasswordHasher's bounded pool. Login attempts
+ * pass the LoginRateLimiter first, so refused ones cost no I/O at all; when
+ * the hasher's queue is full they are reported as RATE_LIMITED too.
+ */
 public class AuthService {
+    private static final ExecutorService IO = Executors.newVirtualThreadPerTaskExecutor();
+
+    public enum LoginResult {
+        SUCCESS,
+        INVALID_CREDENTIALS,
+        RATE_LIMITED,
+        LOCKED_OUT
+    }
+
     private final UserRepository userRepository = new UserRepository();
+    private final PasswordHasher hasher;
+    private final LoginRateLimiter rateLimiter;
+    // Checked against for unknown usernames, so they take as long to reject as a wrong password
+    private final CompletableFuture<String> unknownUserHash;
+
+    public AuthService() {
+        this(PasswordHasher.getInstance(), LoginRateLimiter.getInstance());
+    }
+
+    public AuthService(PasswordHasher hasher, LoginRateLimiter rateLimiter) {
+        this.hasher = hasher;
+        this.rateLimiter = rateLimiter;
+        // Computed in the background so creating the service stays cheap
+        this.unknownUserHash = hasher.hashAsync("");
+    }
+
+    // Outcome of a credential check; user is set only on SUCCESS
+    public record Authentication(LoginResult result, User user) {
+    }
 
-    // Register a new user
+    // Register a new user and log them in; false if the username is taken
     public boolean register(String username, String password) {
-        // Check if username already exists
-        if (userRepository.findUserByUsername(username) != null) {
-            return false; // Username taken
-        }
+        return startSession(userRepository.saveUser(new User(username, hasher.hash(password))));
+    }
 
-        User user = new User(username, password); // store plain text
-        return userRepository.saveUser(user);
+    public CompletableFuture<Boolean> registerAsync(String username, String password) {
+        // Signing up goes straight to the dashboard, so the new account is logged in
+        return createAccountAsync(username, password).thenApply(this::startSession);
     }
 
-    // Login: check if a user exists with username + password
+    // Creates the account without logging anyone in, e.g. for an API client; null if the username is taken
+    public CompletableFuture<User> createAccountAsync(String username, String password) {
+        return hasher.hashAsync(password)
+                .thenApplyAsync(hash -> userRepository.saveUser(new User(username, hash)), IO);
+    }
+
+    private boolean startSession(User user) {
+        if (user == null) {
+            return false;
+        }
+        UserSession.start(user);
+        return true;
+    }
+
+    // Login: check the password against the stored hash
     public boolean login(String username, String password) {
+        return authenticate(username, password) == LoginResult.SUCCESS;
+    }
+
+    public LoginResult authenticate(String username, String password) {
+        Authentication authentication = verifyCredentials(username, password);
+        startSession(authentication.user());
+        return authentication.result();
+    }
+
+    public CompletableFuture<LoginResult> loginAsync(String username, String password) {
+        return verifyCredentialsAsync(username, password).thenApply(authentication -> {
+            startSession(authentication.user());
+            return authentication.result();
+        });
+    }
+
+    // Checks a login without starting the desktop session
+    public Authentication verifyCredentials(String username, String password) {
+        LoginResult refused = checkRateLimit(username);
+        if (refused != null) {
+            return new Authentication(refused, null);
+        }
         User user = userRepository.findUserByUsername(username);
-        return user != null && user.getPassword().equals(password); // compare plain text
+        boolean matches = hasher.verify(password, user != null ? user.getPassword() : unknownUserHash.join());
+        return completeLogin(username, user, password, matches);
+    }
+
+    public CompletableFuture<Authentication> verifyCredentialsAsync(String username, String password) {
+        LoginResult refused = checkRateLimit(username);
+        if (refused != null) {
+            return CompletableFuture.completedFuture(new Authentication(refused, null));
+        }
+        return CompletableFuture.supplyAsync(() -> userRepository.findUserByUsername(username), IO)
+                .thenComposeAsync(user -> hasher.verifyAsync(password, user != null ? user.getPassword() : unknownUserHash.join())
+                        .thenApply(matches -> completeLogin(username, user, password, matches)), IO)
+                .exceptionally(e -> {
+                    // A saturated hasher turns the attempt away like the rate limiter would, instead of failing it
+                    if (isSaturated(e)) return new Authentication(LoginResult.RATE_LIMITED, null);
+                    throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                });
+    }
+
+    // True when the PasswordHasher's queue was full; callers should retry later
+    public static boolean isSaturated(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof RejectedExecutionException;
+    }
+
+    // The refusal, or null if the attempt may go ahead
+    private LoginResult checkRateLimit(String username) {
+        return switch (rateLimiter.tryAcquire(username)) {
+            case ALLOWED -> null;
+            case RATE_LIMITED -> LoginResult.RATE_LIMITED;
+            case LOCKED_OUT -> LoginResult.LOCKED_OUT;
+        };
+    }
+
+    private Authentication completeLogin(String username, User user, String password, boolean matches) {
+        if (user == null || !matches) {
+            // Unknown names count too, or guessing them would be free
+            rateLimiter.recordFailure(username);
+            return new Authentication(LoginResult.INVALID_CREDENTIALS, null);
+        }
+        rateLimiter.recordSuccess(username);
+        if (hasher.needsRehash(user.getPassword())) {
+            // Not awaited: the login itself has already succeeded
+            hasher.hashAsync(password)
+                    .thenAcceptAsync(hash -> userRepository.updatePassword(user.getId(), hash), IO)
+                    .exceptionally(e -> {
+                        System.err.println("⚠️ Could not upgrade password hash: " + e.getMessage());
+                        return null;
+                    });
+        }
+        return new Authentication(LoginResult.SUCCESS, user);
+    }
+
+    // For the signup form; answered from the user cache when the name was checked recently
+    public CompletableFuture<Boolean> isUsernameAvailableAsync(String username) {
+        return CompletableFuture.supplyAsync(() -> userRepository.findUserByUsername(username) == null, IO);
     }
 
     // Optional: fetch logged-in user
     public User getUser(String username) {
         return userRepository.findUserByUsername(username);
     }
-}
\ No newline at end of file
+}
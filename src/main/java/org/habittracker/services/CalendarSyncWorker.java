@@ -0,0 +1,209 @@
+package org.habittracker.services;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.calendar.model.Event;
+import org.habittracker.db.CalendarOutbox;
+import org.habittracker.db.CalendarOutbox.Entry;
+import org.habittracker.db.CalendarOutbox.HabitRef;
+import org.habittracker.db.CalendarOutbox.Operation;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drains the calendar outbox in the background.
+ *
+ * Due entries are sent in batches through the Calendar batch endpoint. Failed
+ * entries are retried with exponential backoff and jitter, up to MAX_ATTEMPTS.
+ */
+public class CalendarSyncWorker {
+    private static final int BATCH_SIZE = 50;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long BASE_BACKOFF_MS = 2_000;
+    private static final long MAX_BACKOFF_MS = 30 * 60_000;
+    private static final long POLL_INTERVAL_MS = 30_000;
+    private static final int MAX_ROUNDS_PER_DRAIN = 20;
+
+    private static final CalendarSyncWorker INSTANCE = new CalendarSyncWorker();
+
+    public static CalendarSyncWorker getInstance() {
+        return INSTANCE;
+    }
+
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private CalendarSyncWorker() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "calendar-sync");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Starts periodic polling so retries happen even without new changes
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            executor.scheduleWithFixedDelay(this::wakeUp, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Called after a transaction that wrote outbox entries has committed
+    public void wakeUp() {
+        start();
+        if (drainQueued.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void drain() {
+        drainQueued.set(false);
+        try {
+            List<Entry> entries;
+            int rounds = 0;
+            do {
+                entries = CalendarOutbox.fetchDue(BATCH_SIZE, MAX_ATTEMPTS);
+                if (!entries.isEmpty()) {
+                    sendBatch(entries);
+                }
+            } while (entries.size() == BATCH_SIZE && ++rounds < MAX_ROUNDS_PER_DRAIN);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("⚠️ Could not read calendar outbox.");
+        }
+    }
+
+    private void sendBatch(List<Entry> entries) throws SQLException {
+        BatchRequest batch;
+        try {
+            batch = GoogleCalendarService.newBatch();
+            for (Entry entry : entries) {
+                queue(batch, entry);
+            }
+            if (batch.size() > 0) {
+                GoogleCalendarService.executeBatch(batch);
+            }
+        } catch (Exception e) {
+            // Transport/auth failure: nothing in this batch went through
+            System.err.println("⚠️ Google Calendar sync failed: " + e.getMessage());
+            for (Entry entry : entries) {
+                retryLater(entry, e.getMessage());
+            }
+        }
+    }
+
+    private void queue(BatchRequest batch, Entry entry) throws Exception {
+        switch (entry.operation()) {
+            case CREATE -> {
+                HabitRef habit = CalendarOutbox.findHabit(entry.habitId());
+                if (habit == null) {
+                    CalendarOutbox.remove(entry.id()); // deleted before it was ever synced
+                    return;
+                }
+                GoogleCalendarService.queueAddEvent(batch, habit.name(), "Reminder for habit: " + habit.name(),
+                        new Date(), 60, new Callback<>(entry) {
+                            @Override
+                            void onSuccess(Event event) throws SQLException {
+                                if (!CalendarOutbox.attachEvent(entry.habitId(), event.getId())) {
+                                    // Habit was deleted while the event was being created
+                                    CalendarOutbox.enqueue(entry.habitId(), Operation.DELETE, event.getId());
+                                    wakeUp();
+                                }
+                                System.out.println("✅ Event created: " + event.getHtmlLink());
+                            }
+                        });
+            }
+            case UPDATE -> {
+                HabitRef habit = CalendarOutbox.findHabit(entry.habitId());
+                String eventId = habit == null ? null : habit.eventId();
+                if (eventId == null) {
+                    // Deleted, or not created yet (the pending CREATE uses the current name)
+                    CalendarOutbox.remove(entry.id());
+                    return;
+                }
+                GoogleCalendarService.queueUpdateEvent(batch, eventId, habit.name(), "Updated habit: " + habit.name(),
+                        new Callback<>(entry) {
+                            @Override
+                            void onSuccess(Event event) {
+                                System.out.println("✏️ Event updated: " + event.getHtmlLink());
+                            }
+                        });
+            }
+            case DELETE -> {
+                if (entry.eventId() == null || entry.eventId().isEmpty()) {
+                    CalendarOutbox.remove(entry.id());
+                    return;
+                }
+                GoogleCalendarService.queueDeleteEvent(batch, entry.eventId(), new Callback<>(entry) {
+                    @Override
+                    void onSuccess(Void ignored) {
+                        System.out.println("🗑 Event deleted: " + entry.eventId());
+                    }
+                });
+            }
+        }
+    }
+
+    private void retryLater(Entry entry, String error) {
+        int attempts = entry.attempts() + 1;
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 20));
+        long jitter = ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+        try {
+            CalendarOutbox.reschedule(entry.id(), attempts, System.currentTimeMillis() + backoff + jitter, error);
+            if (attempts >= MAX_ATTEMPTS) {
+                System.err.println("⚠️ Giving up on calendar " + entry.operation() + " for habit " + entry.habitId());
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Removes the outbox entry on success, reschedules it on failure
+    private abstract class Callback<T> extends JsonBatchCallback<T> {
+        private final Entry entry;
+
+        Callback(Entry entry) {
+            this.entry = entry;
+        }
+
+        abstract void onSuccess(T result) throws SQLException;
+
+        @Override
+        public void onSuccess(T result, HttpHeaders responseHeaders) {
+            try {
+                onSuccess(result);
+                CalendarOutbox.remove(entry.id());
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+            // Deleting an event that is already gone counts as done
+            if (entry.operation() == Operation.DELETE && (error.getCode() == 404 || error.getCode() == 410)) {
+                try {
+                    CalendarOutbox.remove(entry.id());
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+                return;
+            }
+            retryLater(entry, error.getCode() + " " + error.getMessage());
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package org.habittracker.services;
 
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.store.FileDataStoreFactory;
@@ -11,9 +17,15 @@ import com.google.api.services.calendar.CalendarScopes;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.EventDateTime;
 import com.google.api.client.util.DateTime;
+import org.habittracker.utils.AppConfig;
 
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.Date;
@@ -22,64 +34,194 @@ public class GoogleCalendarService {
     private static final String APPLICATION_NAME = "Habit Tracker";
     private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
     private static final String TOKENS_DIRECTORY_PATH = "tokens";
+    private static final String DEFAULT_CREDENTIALS_PATH = "src/main/resources/credentials.json";
+
+    // Refresh the access token this long before it expires rather than on the first 401
+    private static final long REFRESH_MARGIN_SECONDS = 60;
+
+    // Built once and shared: one HTTP transport (keep-alive connections) and one authorized credential
+    private static volatile Calendar service;
+    private static volatile Credential credential;
+    private static HttpTransport httpTransport;
 
     private static Calendar getCalendarService() throws IOException, GeneralSecurityException {
-        var httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-        var clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new FileReader("src/main/resources/credentials.json"));
+        Calendar current = service;
+        if (current != null) {
+            refreshIfExpiring();
+            // A refresh that failed has reset the client; fall through and rebuild it
+            current = service;
+            if (current != null) return current;
+        }
+        synchronized (GoogleCalendarService.class) {
+            if (service == null) {
+                service = buildCalendarService();
+            }
+            return service;
+        }
+    }
+
+    private static Calendar buildCalendarService() throws IOException, GeneralSecurityException {
+        if (httpTransport == null) {
+            httpTransport = GoogleNetHttpTransport.newTrustedTransport();
+        }
+
+        // GOOGLE_CALENDAR_ROOT_URL points the client at a local stand-in server (e.g. in tests);
+        // GOOGLE_CALENDAR_AUTH=none skips OAuth for such a server
+        String rootUrl = AppConfig.get("GOOGLE_CALENDAR_ROOT_URL");
+        HttpRequestInitializer initializer;
+        if ("none".equalsIgnoreCase(AppConfig.get("GOOGLE_CALENDAR_AUTH", "oauth"))) {
+            initializer = request -> { };
+        } else {
+            credential = authorize(httpTransport);
+            initializer = credential;
+        }
+
+        Calendar.Builder builder = new Calendar.Builder(httpTransport, JSON_FACTORY, initializer)
+                .setApplicationName(APPLICATION_NAME);
+        if (rootUrl != null && !rootUrl.isBlank()) {
+            builder.setRootUrl(rootUrl.endsWith("/") ? rootUrl : rootUrl + "/");
+        }
+        return builder.build();
+    }
+
+    private static Credential authorize(HttpTransport transport) throws IOException {
+        GoogleClientSecrets clientSecrets;
+        try (Reader reader = openClientSecrets()) {
+            clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, reader);
+        }
 
         var flow = new GoogleAuthorizationCodeFlow.Builder(
-                httpTransport, JSON_FACTORY, clientSecrets,
+                transport, JSON_FACTORY, clientSecrets,
                 Collections.singleton(CalendarScopes.CALENDAR))
-                .setDataStoreFactory(new FileDataStoreFactory(new java.io.File(TOKENS_DIRECTORY_PATH)))
+                .setDataStoreFactory(new FileDataStoreFactory(new File(TOKENS_DIRECTORY_PATH)))
                 .setAccessType("offline")
                 .build();
 
+        // Stored tokens are reused, so the local receiver only runs on first authorization
         var receiver = new com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver();
-        var credential = new com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp(flow, receiver)
+        return new com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp(flow, receiver)
                 .authorize("user");
+    }
 
-        return new Calendar.Builder(httpTransport, JSON_FACTORY, credential)
-                .setApplicationName(APPLICATION_NAME)
-                .build();
+    private static Reader openClientSecrets() throws IOException {
+        File file = new File(AppConfig.get("GOOGLE_CREDENTIALS_PATH", DEFAULT_CREDENTIALS_PATH));
+        if (file.exists()) {
+            return new FileReader(file, StandardCharsets.UTF_8);
+        }
+        InputStream resource = GoogleCalendarService.class.getResourceAsStream("/credentials.json");
+        if (resource == null) {
+            throw new IOException("Google credentials not found: " + file.getPath());
+        }
+        return new InputStreamReader(resource, StandardCharsets.UTF_8);
+    }
+
+    private static void refreshIfExpiring() throws IOException {
+        Credential current = credential;
+        if (current == null) return;
+        Long expiresIn = current.getExpiresInSeconds();
+        if (expiresIn != null && expiresIn <= REFRESH_MARGIN_SECONDS && !current.refreshToken()) {
+            // Refresh token revoked or missing: authorize again on next use
+            reset();
+        }
+    }
+
+    // Drops the cached client so the next call rebuilds it
+    public static synchronized void reset() {
+        service = null;
+        credential = null;
+    }
+
+    private static <T> T execute(CalendarCall<T> call) throws IOException, GeneralSecurityException {
+        try {
+            return call.run(getCalendarService());
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() == 401) {
+                reset();
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface CalendarCall<T> {
+        T run(Calendar service) throws IOException;
     }
 
     // Add event and return Event
     public static Event addEvent(String summary, String description, Date startTime, int durationMinutes)
             throws IOException, GeneralSecurityException {
 
-        Calendar service = getCalendarService();
+        Event event = buildEvent(summary, description, startTime, durationMinutes);
+        Event created = execute(service -> service.events().insert("primary", event).execute());
+        System.out.println("✅ Event created: " + created.getHtmlLink());
+        return created;
+    }
+
+    // Delete an event by ID
+    public static void deleteEvent(String eventId) throws IOException, GeneralSecurityException {
+        if (eventId == null || eventId.isEmpty()) return;
+        execute(service -> service.events().delete("primary", eventId).execute());
+        System.out.println("🗑 Event deleted: " + eventId);
+    }
+
+    // Update event summary/description (optional)
+    public static Event updateEvent(String eventId, String newSummary, String newDescription) throws IOException, GeneralSecurityException {
+        if (eventId == null || eventId.isEmpty()) return null;
+        Event updated = execute(service -> {
+            Event event = service.events().get("primary", eventId).execute();
+            event.setSummary(newSummary);
+            event.setDescription(newDescription);
+            return service.events().update("primary", event.getId(), event).execute();
+        });
+        System.out.println("✏️ Event updated: " + updated.getHtmlLink());
+        return updated;
+    }
 
+    private static Event buildEvent(String summary, String description, Date startTime, int durationMinutes) {
         DateTime startDateTime = new DateTime(startTime);
-        DateTime endDateTime = new DateTime(new Date(startTime.getTime() + durationMinutes * 60000));
+        DateTime endDateTime = new DateTime(new Date(startTime.getTime() + durationMinutes * 60000L));
 
-        Event event = new Event()
+        return new Event()
                 .setSummary(summary)
                 .setDescription(description)
                 .setStart(new EventDateTime().setDateTime(startDateTime))
                 .setEnd(new EventDateTime().setDateTime(endDateTime));
+    }
+
+    // Batch support: several operations sent in one HTTP request through the Calendar batch endpoint
 
-        event = service.events().insert("primary", event).execute();
-        System.out.println("✅ Event created: " + event.getHtmlLink());
-        return event;
+    public static BatchRequest newBatch() throws IOException, GeneralSecurityException {
+        return getCalendarService().batch();
     }
 
-    // Delete an event by ID
-    public static void deleteEvent(String eventId) throws IOException, GeneralSecurityException {
-        if (eventId == null || eventId.isEmpty()) return;
-        Calendar service = getCalendarService();
-        service.events().delete("primary", eventId).execute();
-        System.out.println("🗑 Event deleted: " + eventId);
+    public static void queueAddEvent(BatchRequest batch, String summary, String description, Date startTime,
+                                     int durationMinutes, JsonBatchCallback<Event> callback)
+            throws IOException, GeneralSecurityException {
+        Event event = buildEvent(summary, description, startTime, durationMinutes);
+        getCalendarService().events().insert("primary", event).queue(batch, callback);
     }
 
-    // Update event summary/description (optional)
-    public static Event updateEvent(String eventId, String newSummary, String newDescription) throws IOException, GeneralSecurityException {
-        if (eventId == null || eventId.isEmpty()) return null;
-        Calendar service = getCalendarService();
-        Event event = service.events().get("primary", eventId).execute();
-        event.setSummary(newSummary);
-        event.setDescription(newDescription);
-        event = service.events().update("primary", event.getId(), event).execute();
-        System.out.println("✏️ Event updated: " + event.getHtmlLink());
-        return event;
+    // Uses PATCH so an update is a single request and can be batched
+    public static void queueUpdateEvent(BatchRequest batch, String eventId, String newSummary, String newDescription,
+                                        JsonBatchCallback<Event> callback)
+            throws IOException, GeneralSecurityException {
+        Event patch = new Event().setSummary(newSummary).setDescription(newDescription);
+        getCalendarService().events().patch("primary", eventId, patch).queue(batch, callback);
+    }
+
+    public static void queueDeleteEvent(BatchRequest batch, String eventId, JsonBatchCallback<Void> callback)
+            throws IOException, GeneralSecurityException {
+        getCalendarService().events().delete("primary", eventId).queue(batch, callback);
+    }
+
+    public static void executeBatch(BatchRequest batch) throws IOException {
+        try {
+            batch.execute();
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() == 401) {
+                reset();
+            }
+            throw e;
+        }
     }
 }
@@ -0,0 +1,213 @@
+package org.habittracker.services;
+
+import org.habittracker.utils.AppConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Throttles login attempts before they reach the database.
+ *
+ * An attempt must pass three checks, cheapest first:
+ *   lockout     a username with too many recent failures is refused until its lockout ends
+ *   per user    a token bucket per username (LOGIN_USER_PER_MINUTE, burst LOGIN_USER_BURST)
+ *   global      one token bucket for all attempts (LOGIN_GLOBAL_PER_SECOND, burst LOGIN_GLOBAL_BURST)
+ * Failures are counted over a sliding window of LOGIN_FAILURE_WINDOW_MS; reaching
+ * LOGIN_MAX_FAILURES locks the username for LOGIN_LOCKOUT_MS.
+ *
+ * Per-username state lives in fixed arrays of LOGIN_LIMITER_STRIPES slots
+ * picked by a case-insensitive hash of the name, so memory is bounded no
+ * matter how many names an attacker tries, and nothing is allocated per
+ * attempt. Every slot is one long updated by compare-and-set:
+ *   buckets     when the bucket will be full again (GCRA), in nanoseconds since start
+ *   failures    name fingerprint and window number (24 bits each), previous and
+ *               current window's count (8 bits each)
+ *   lockedUntil name fingerprint (24 bits), end of the lockout in milliseconds since start
+ * Names that share a slot share its token bucket, but failures and lockouts
+ * only apply to the name whose fingerprint (a second, independent hash) is
+ * in the cell. Otherwise failing logins for a few thousand made-up names would
+ * lock every real user out. A name failing in a slot takes the failure count
+ * over from another, and a new lockout replaces another name's.
+ */
+public class LoginRateLimiter {
+
+    public enum Decision {
+        ALLOWED,
+        RATE_LIMITED,
+        LOCKED_OUT
+    }
+
+    private static final LoginRateLimiter INSTANCE = new LoginRateLimiter(
+            AppConfig.getInt("LOGIN_LIMITER_STRIPES", 4096),
+            AppConfig.getInt("LOGIN_USER_PER_MINUTE", 10),
+            AppConfig.getInt("LOGIN_USER_BURST", 5),
+            AppConfig.getInt("LOGIN_GLOBAL_PER_SECOND", 50),
+            AppConfig.getInt("LOGIN_GLOBAL_BURST", 100),
+            AppConfig.getInt("LOGIN_MAX_FAILURES", 5),
+            AppConfig.getLong("LOGIN_FAILURE_WINDOW_MS", 15 * 60_000),
+            AppConfig.getLong("LOGIN_LOCKOUT_MS", 15 * 60_000),
+            System::nanoTime);
+
+    // The lockout end takes the low 40 bits of its cell, about 34 years of uptime
+    private static final long MAX_MILLIS = (1L << 40) - 1;
+
+    public static LoginRateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    private final int mask;
+    private final AtomicLongArray buckets;
+    private final AtomicLongArray failures;
+    private final AtomicLongArray lockedUntil;
+    // A single slot, so it can share the per-user bucket code
+    private final AtomicLongArray globalBucket = new AtomicLongArray(1);
+
+    private final long userInterval;
+    private final long userTolerance;
+    private final long globalInterval;
+    private final long globalTolerance;
+    private final int maxFailures;
+    private final long window;
+    private final long lockout;
+
+    private final LongSupplier clock;
+    private final long origin;
+
+    public LoginRateLimiter(int stripes, int userPerMinute, int userBurst, int globalPerSecond, int globalBurst,
+                            int maxFailures, long failureWindowMillis, long lockoutMillis, LongSupplier nanoClock) {
+        if (userPerMinute < 1 || globalPerSecond < 1 || userBurst < 1 || globalBurst < 1 || maxFailures < 1)
+            throw new IllegalArgumentException("Login limits must be positive");
+        int size = Integer.highestOneBit(Math.max(1, Math.min(stripes, 1 << 24) * 2 - 1));
+        this.mask = size - 1;
+        this.buckets = new AtomicLongArray(size);
+        this.failures = new AtomicLongArray(size);
+        this.lockedUntil = new AtomicLongArray(size);
+
+        this.userInterval = TimeUnit.MINUTES.toNanos(1) / userPerMinute;
+        this.userTolerance = userInterval * (userBurst - 1);
+        this.globalInterval = TimeUnit.SECONDS.toNanos(1) / globalPerSecond;
+        this.globalTolerance = globalInterval * (globalBurst - 1);
+        // The failure counts are 8 bits wide
+        this.maxFailures = Math.min(maxFailures, 0xFF);
+        this.window = Math.max(1, TimeUnit.MILLISECONDS.toNanos(failureWindowMillis));
+        this.lockout = TimeUnit.MILLISECONDS.toNanos(lockoutMillis);
+
+        this.clock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+    }
+
+    // Takes a token for this attempt, or says why it must be refused
+    public Decision tryAcquire(String username) {
+        long now = now();
+        int slot = slot(username);
+        if (isLocked(lockedUntil.get(slot), fingerprint(username), now)) return Decision.LOCKED_OUT;
+        if (!takeToken(buckets, slot, now, userInterval, userTolerance)) return Decision.RATE_LIMITED;
+        if (!takeToken(globalBucket, 0, now, globalInterval, globalTolerance)) {
+            // Refused anyway, so the user keeps their token; the user bucket goes first so that
+            // one name's rejected attempts do not drain the global bucket for everyone else
+            buckets.addAndGet(slot, -userInterval);
+            return Decision.RATE_LIMITED;
+        }
+        return Decision.ALLOWED;
+    }
+
+    public void recordFailure(String username) {
+        long now = now();
+        int slot = slot(username);
+        long name = fingerprint(username);
+        long windowNumber = (now / window) & 0xFF_FFFF;
+        while (true) {
+            long expected = failures.get(slot);
+            // Another name's counts are not this one's failures
+            long cell = expected >>> 40 == name ? expected : 0;
+            long cellWindow = (cell >>> 16) & 0xFF_FFFF;
+            int previous = (int) (cell >>> 8) & 0xFF;
+            int current = (int) cell & 0xFF;
+            if (cellWindow != windowNumber) {
+                // One window on: the current count becomes the previous one; further on, both expired
+                previous = cellWindow == ((windowNumber - 1) & 0xFF_FFFF) ? current : 0;
+                current = 0;
+            }
+            current = Math.min(current + 1, 0xFF);
+
+            // Sliding window estimate: the previous window counts for the part of it still in range
+            long elapsed = now % window;
+            long recent = current + previous * (window - elapsed) / window;
+            if (recent >= maxFailures) {
+                if (failures.compareAndSet(slot, expected, 0)) {
+                    lock(slot, name, now);
+                    System.err.println("⚠️ Login locked for " + TimeUnit.NANOSECONDS.toSeconds(lockout)
+                            + "s after " + recent + " failed attempts");
+                    return;
+                }
+            } else if (failures.compareAndSet(slot, expected,
+                    name << 40 | windowNumber << 16 | (long) previous << 8 | current)) {
+                return;
+            }
+        }
+    }
+
+    public void recordSuccess(String username) {
+        int slot = slot(username);
+        long cell = failures.get(slot);
+        // Only this name's count; a colliding name keeps its own
+        if (cell >>> 40 == fingerprint(username)) failures.compareAndSet(slot, cell, 0);
+    }
+
+    /*
+     * The cell holds one lockout, so a newer one replaces another name's. Keeping
+     * the older instead would let a locked decoy name switch lockouts off for
+     * the whole slot; replacing it only frees a name after the same number of
+     * failures under the slot's shared bucket.
+     */
+    private void lock(int slot, long name, long now) {
+        lockedUntil.set(slot, name << 40 | Math.min(ceilMillis(now + lockout), MAX_MILLIS));
+    }
+
+    private static boolean isLocked(long cell, long name, long now) {
+        return cell >>> 40 == name && TimeUnit.MILLISECONDS.toNanos(cell & MAX_MILLIS) - now > 0;
+    }
+
+    private static long ceilMillis(long nanos) {
+        return (nanos + 999_999) / 1_000_000;
+    }
+
+    private long now() {
+        return clock.getAsLong() - origin;
+    }
+
+    /*
+     * GCRA: the slot holds the time at which the bucket would be full again.
+     * An attempt is allowed if that lies at most tolerance (the burst) in the
+     * future, and pushes it one interval further.
+     */
+    private static boolean takeToken(AtomicLongArray cells, int slot, long now, long interval, long tolerance) {
+        while (true) {
+            long arrival = cells.get(slot);
+            long base = Math.max(arrival, now);
+            if (base - now > tolerance) return false;
+            if (cells.compareAndSet(slot, arrival, base + interval)) return true;
+        }
+    }
+
+    // Case-insensitive like MySQL's username comparison, so changing case does not reset the limits
+    private int slot(String username) {
+        int h = 0;
+        for (int i = 0; i < username.length(); i++) {
+            h = 31 * h + Character.toLowerCase(username.charAt(i));
+        }
+        // Spread the bits so similar names do not land in neighbouring slots
+        h *= 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // 24 bits of FNV-1a over the same case-folded name; independent of slot(), so names sharing a slot rarely share it
+    private static long fingerprint(String username) {
+        int h = 0x811C9DC5;
+        for (int i = 0; i < username.length(); i++) {
+            h = (h ^ Character.toLowerCase(username.charAt(i))) * 0x01000193;
+        }
+        return (h ^ (h >>> 24)) & 0xFF_FFFF;
+    }
+}
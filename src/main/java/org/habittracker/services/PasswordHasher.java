@@ -0,0 +1,143 @@
+package org.habittracker.services;
+
+import org.habittracker.utils.AppConfig;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, stored as
+ * "pbkdf2-sha256$iterations$salt$hash" (salt and hash in Base64).
+ *
+ * The iteration count is the cost knob (PASSWORD_HASH_ITERATIONS, default
+ * 600,000 as recommended by OWASP); PasswordHashBenchmark measures what one
+ * hash costs per core. Each stored hash carries its own count, so raising it
+ * keeps old hashes valid and needsRehash() tells when to replace them.
+ * Anything else in the column is a plain-text password from before hashing.
+ *
+ * Hashing is deliberately slow, so the async methods run it on a small
+ * bounded pool instead of the caller's thread: the number of hashes in
+ * flight is capped at PASSWORD_HASH_THREADS (default: one per core), and
+ * when the queue is full further requests fail fast rather than pile up:
+ * their futures complete with a RejectedExecutionException.
+ */
+public class PasswordHasher {
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int QUEUE_CAPACITY = 256;
+
+    private static final PasswordHasher INSTANCE =
+            new PasswordHasher(AppConfig.getInt("PASSWORD_HASH_ITERATIONS", 600_000));
+
+    private static final ExecutorService POOL = createPool(
+            AppConfig.getInt("PASSWORD_HASH_THREADS", Runtime.getRuntime().availableProcessors()));
+
+    private final SecureRandom random = new SecureRandom();
+    private final int iterations;
+
+    public static PasswordHasher getInstance() {
+        return INSTANCE;
+    }
+
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("Iterations must be positive: " + iterations);
+        this.iterations = iterations;
+    }
+
+    private static ExecutorService createPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+            Thread t = new Thread(r, "password-hash-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    // Compares in constant time, so the response time does not reveal how much of a guess was right
+    public boolean verify(String password, String stored) {
+        if (stored == null) return false;
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] expected = base64.decode(parts[3]);
+            return MessageDigest.isEqual(expected, derive(password, base64.decode(parts[2]), Integer.parseInt(parts[1])));
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠️ Malformed password hash: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // True for plain-text passwords and hashes made with a different cost
+    public boolean needsRehash(String stored) {
+        if (!isHashed(stored)) return true;
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || !parts[1].equals(String.valueOf(iterations));
+    }
+
+    public CompletableFuture<String> hashAsync(String password) {
+        return submit(() -> hash(password));
+    }
+
+    public CompletableFuture<Boolean> verifyAsync(String password, String stored) {
+        return submit(() -> verify(password, stored));
+    }
+
+    // A full pool fails the future instead of throwing, so callers see saturation in one place
+    private static <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, POOL);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static boolean isHashed(String stored) {
+        return stored.startsWith(PREFIX + "$");
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // Every Java runtime is required to provide this algorithm
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
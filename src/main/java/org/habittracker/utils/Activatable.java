@@ -0,0 +1,15 @@
+package org.habittracker.utils;
+
+/**
+ * Controller of a cached screen. Its view is loaded once and reused, so data
+ * is refreshed when the screen is shown rather than in initialize().
+ */
+public interface Activatable {
+
+    // Screen has just been shown
+    void onActivate();
+
+    // Screen is about to be replaced; stop animations and pending loads
+    default void onDeactivate() {
+    }
+}
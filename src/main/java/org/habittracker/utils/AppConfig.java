@@ -0,0 +1,56 @@
+package org.habittracker.utils;
+
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Settings from config.properties. A JVM system property with the same key
+ * (e.g. -DDB_URL=...) overrides the file, which lets tools and tests point the
+ * app at another database or endpoint without editing resources.
+ */
+public final class AppConfig {
+    private static final Properties PROPERTIES = new Properties();
+
+    static {
+        try (InputStream input = AppConfig.class
+                .getClassLoader()
+                .getResourceAsStream("config.properties")) {
+
+            if (input == null) {
+                throw new RuntimeException("config.properties not found in resources!");
+            }
+            PROPERTIES.load(input);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to load configuration", e);
+        }
+    }
+
+    private AppConfig() {
+    }
+
+    public static String get(String key) {
+        String value = System.getProperty(key);
+        return value != null ? value : PROPERTIES.getProperty(key);
+    }
+
+    public static String get(String key, String defaultValue) {
+        String value = get(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
@@ -0,0 +1,94 @@
+package org.habittracker.utils;
+
+import javafx.fxml.FXMLLoader;
+import javafx.stage.Stage;
+import org.habittracker.db.AnalyticsCache;
+import org.habittracker.db.AsyncHabitDAO;
+import org.habittracker.db.CompletionWriteBuffer;
+import org.habittracker.db.DatabaseConnection;
+import org.habittracker.db.LocalHabitStore;
+import org.habittracker.db.UserCache;
+import org.habittracker.services.AuthService;
+import org.habittracker.services.CalendarSyncWorker;
+
+/**
+ * Application-scoped services, created once in Main.start.
+ *
+ * Controllers receive it through the FXMLLoader controller factory (a public
+ * constructor taking an AppContext), so switching screens reuses the same
+ * services and DAO instead of building new ones. Screens themselves are
+ * cached by the Navigator.
+ */
+public class AppContext {
+    private final AuthService authService = new AuthService();
+    private final CompletionWriteBuffer writeBuffer = CompletionWriteBuffer.getInstance();
+    private final CalendarSyncWorker calendarSync = CalendarSyncWorker.getInstance();
+
+    private Navigator navigator;
+
+    // DAO of the logged-in user, kept until logout
+    private AsyncHabitDAO habitDAO;
+    private int habitDAOUserId;
+
+    public Navigator getNavigator() {
+        return navigator;
+    }
+
+    public AuthService getAuthService() {
+        return authService;
+    }
+
+    public synchronized AsyncHabitDAO getHabitDAO() {
+        int userId = UserSession.getUserId();
+        if (habitDAO == null || habitDAOUserId != userId) {
+            habitDAO = AsyncHabitDAO.forUser(userId);
+            habitDAOUserId = userId;
+        }
+        return habitDAO;
+    }
+
+    public synchronized void endSession() {
+        UserSession.clear();
+        habitDAO = null;
+    }
+
+    // Loader for a screen whose controller gets this context injected
+    public FXMLLoader loader(String fxmlPath) {
+        FXMLLoader loader = new FXMLLoader(AppContext.class.getResource(fxmlPath));
+        loader.setControllerFactory(this::createController);
+        return loader;
+    }
+
+    private Object createController(Class<?> type) {
+        try {
+            try {
+                return type.getConstructor(AppContext.class).newInstance(this);
+            } catch (NoSuchMethodException e) {
+                return type.getDeclaredConstructor().newInstance();
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create controller " + type.getName(), e);
+        }
+    }
+
+    public void start(Stage stage) {
+        navigator = new Navigator(stage, this);
+        // Send calendar changes left in the outbox by a previous run
+        calendarSync.start();
+    }
+
+    // Queued writes first, then background workers, then the connections they use
+    public void shutdown() {
+        writeBuffer.shutdown();
+        // Unsent calendar changes stay in the outbox and are picked up on next start
+        calendarSync.shutdown();
+        LocalHabitStore.closeAll();
+        DatabaseConnection.shutdown();
+
+        AnalyticsCache.CacheStats stats = AnalyticsCache.getInstance().getStats();
+        System.out.printf("📊 Analytics cache: %d hits, %d misses (%.0f%%), %d evicted, %d invalidated%n",
+                stats.hits(), stats.misses(), stats.hitRate() * 100, stats.evictions(), stats.invalidations());
+        UserCache.CacheStats users = UserCache.getInstance().getStats();
+        System.out.printf("📊 User cache: %d hits, %d misses%n", users.hits(), users.misses());
+    }
+}
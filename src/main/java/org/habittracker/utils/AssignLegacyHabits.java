@@ -0,0 +1,37 @@
+package org.habittracker.utils;
+
+import org.habittracker.db.DatabaseConnection;
+import org.habittracker.db.HabitDAO;
+import org.habittracker.db.UserRepository;
+import org.habittracker.models.User;
+
+import java.sql.SQLException;
+
+/**
+ * One-off admin step for a database upgraded from before user accounts:
+ * gives every habit and completion that has no user to the named account.
+ * Until it is run those rows belong to nobody, and no user can see them.
+ *
+ * Run while the app and server are stopped, against the same DB_URL:
+ *   java -cp habit-tracker.jar org.habittracker.utils.AssignLegacyHabits <username>
+ */
+public class AssignLegacyHabits {
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length != 1) {
+            System.err.println("Usage: AssignLegacyHabits <username>");
+            System.exit(2);
+        }
+        try {
+            User owner = new UserRepository().findUserByUsername(args[0]);
+            if (owner == null) {
+                System.err.println("⚠️ No user named " + args[0]);
+                System.exit(1);
+            }
+            int assigned = HabitDAO.assignUnownedRows(owner.getId());
+            System.out.println("✅ Assigned " + assigned + " habits to " + owner.getUsername());
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.habittracker.utils;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+// Runs tasks on the JavaFX Application Thread via Platform.runLater
+public final class FxExecutor implements Executor {
+    public static final FxExecutor INSTANCE = new FxExecutor();
+
+    private FxExecutor() {
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (Platform.isFxApplicationThread()) {
+            task.run();
+        } else {
+            Platform.runLater(task);
+        }
+    }
+
+    /**
+     * Hands the result of a background future to the FX thread. Cancelling the
+     * returned stage also cancels the source future, without interrupting it;
+     * cancelled work is dropped silently and other failures are logged.
+     */
+    public static <T> CompletableFuture<Void> thenOnFx(CompletableFuture<T> future, Consumer<T> action) {
+        CompletableFuture<Void> stage = future.thenAcceptAsync(action, INSTANCE);
+        stage.whenComplete((ignored, error) -> {
+            if (stage.isCancelled()) {
+                future.cancel(false);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (cause != null && !(cause instanceof CancellationException)) {
+                cause.printStackTrace();
+            }
+        });
+        return stage;
+    }
+}
@@ -1,38 +1,54 @@
 package org.habittracker.utils;
 
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.habittracker.db.SchemaMigrator;
 
 import java.io.IOException;
+import java.sql.SQLException;
 
 public class Main extends Application {
+    private AppContext context;
+
+    @Override
+    public void init() {
+        // Runs on the launcher thread before the first window, so screens never wait on DDL
+        try {
+            SchemaMigrator.migrate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("⚠️ Database migration failed; it will be retried when the database is first used.");
+        }
+    }
 
     @Override
     public void start(Stage stage) throws IOException {
+        context = new AppContext();
+        context.start(stage);
+
         // Correct path to load the FXML file from the 'resources/habittracker' folder
-        FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("/habittracker/homepage.fxml"));
-        
-        Parent root = fxmlLoader.load(); 
-        
-        // Use a good default size for the dashboard layout
-        Scene scene = new Scene(root, 1100, 750); 
-        
-        stage.setTitle("Habit Tracker - Dashboard");
+        context.getNavigator().show("/habittracker/homepage.fxml", "Habit Tracker - Dashboard");
 
         // Set minimum size to prevent the UI from breaking if resized too small
         stage.setMinWidth(1000);
         stage.setMinHeight(650);
-        
-        stage.setScene(scene);
+
         stage.show();
+
+        // Parse the screens the user is likely to open next while they look at the homepage
+        context.getNavigator().preload("/habittracker/login.fxml", "/habittracker/signup.fxml",
+                "/habittracker/dashboard.fxml", "/habittracker/analytics.fxml");
+    }
+
+    @Override
+    public void stop() {
+        // Write out completion toggles still queued in the write-behind buffer, then stop workers
+        if (context != null)
+            context.shutdown();
     }
 
     public static void main(String[] args) {
-        // Database initialization is handled when HabitDAO is instantiated in the Controller.
-        // We only need to launch the JavaFX application here.
+        // The schema is migrated in init(); we only need to launch the JavaFX application here.
         launch(args);
     }
 }
\ No newline at end of file
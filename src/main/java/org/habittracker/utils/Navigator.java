@@ -0,0 +1,95 @@
+package org.habittracker.utils;
+
+import javafx.animation.PauseTransition;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Switches screens on the one Scene of the main window.
+ *
+ * Each FXML file is parsed (and its stylesheets applied) once; later visits
+ * swap the cached root back in and notify the controller if it is
+ * Activatable. Must be used on the FX thread.
+ */
+public class Navigator {
+    // Use a good default size for the dashboard layout
+    private static final double WIDTH = 1100;
+    private static final double HEIGHT = 750;
+    // Gap between background preloads so each one gets its own frame
+    private static final Duration PRELOAD_GAP = Duration.millis(150);
+
+    private record View(Parent root, Object controller) {
+    }
+
+    private final Stage stage;
+    private final AppContext context;
+    private final Map<String, View> views = new HashMap<>();
+    private View current;
+
+    public Navigator(Stage stage, AppContext context) {
+        this.stage = stage;
+        this.context = context;
+    }
+
+    // Shows a screen; title may be null to keep the current one
+    public void show(String fxmlPath, String title) throws IOException {
+        View view = view(fxmlPath);
+        if (current != null && current != view && current.controller() instanceof Activatable previous)
+            previous.onDeactivate();
+
+        Scene scene = stage.getScene();
+        if (scene == null)
+            stage.setScene(new Scene(view.root(), WIDTH, HEIGHT));
+        else if (scene.getRoot() != view.root())
+            scene.setRoot(view.root());
+        if (title != null)
+            stage.setTitle(title);
+
+        current = view;
+        if (view.controller() instanceof Activatable activated)
+            activated.onActivate();
+    }
+
+    // Parses the given screens one at a time in the background of the FX thread
+    public void preload(String... fxmlPaths) {
+        Deque<String> queue = new ArrayDeque<>(Arrays.asList(fxmlPaths));
+        preloadNext(queue);
+    }
+
+    private void preloadNext(Deque<String> queue) {
+        if (queue.isEmpty()) return;
+        PauseTransition gap = new PauseTransition(PRELOAD_GAP);
+        gap.setOnFinished(e -> {
+            String path = queue.poll();
+            try {
+                view(path);
+            } catch (IOException ex) {
+                // Not fatal: show() tries again and reports the error there
+                System.err.println("⚠️ Could not preload " + path + ": " + ex.getMessage());
+            }
+            preloadNext(queue);
+        });
+        gap.play();
+    }
+
+    private View view(String fxmlPath) throws IOException {
+        View view = views.get(fxmlPath);
+        if (view == null) {
+            FXMLLoader loader = context.loader(fxmlPath);
+            Parent root = loader.load();
+            view = new View(root, loader.getController());
+            views.put(fxmlPath, view);
+        }
+        return view;
+    }
+}
@@ -0,0 +1,52 @@
+package org.habittracker.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.habittracker.controllers.ApiController;
+import org.habittracker.db.CompletionWriteBuffer;
+import org.habittracker.db.DatabaseConnection;
+import org.habittracker.db.LocalHabitStore;
+import org.habittracker.db.SchemaMigrator;
+import org.habittracker.services.ApiSessions;
+import org.habittracker.services.AuthService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+
+/**
+ * Server mode: the same habits and accounts as the desktop app, served as a
+ * JSON API (see ApiController) without JavaFX. Every request gets its own
+ * virtual thread, so blocking database calls cost no platform threads.
+ *
+ * Run with: java -cp habit-tracker.jar org.habittracker.utils.ServerMain [port]
+ */
+public class ServerMain {
+
+    public static void main(String[] args) throws IOException {
+        try {
+            SchemaMigrator.migrate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("⚠️ Database migration failed; it will be retried when the database is first used.");
+        }
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : AppConfig.getInt("SERVER_PORT", 8080);
+        ApiSessions sessions = new ApiSessions(AppConfig.getLong("SERVER_SESSION_TTL_MS", 12 * 60 * 60_000L));
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), AppConfig.getInt("SERVER_BACKLOG", 0));
+        server.createContext("/api", new ApiController(new AuthService(), sessions,
+                AppConfig.getInt("SERVER_MAX_OPEN_REPOSITORIES", 1000)));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+
+        // Calendar sync is not started: changes wait in the outbox until the desktop app, which holds the OAuth login, runs
+        DatabaseConnection.beforeShutdown(() -> {
+            server.stop(1);
+            CompletionWriteBuffer.getInstance().shutdown();
+            LocalHabitStore.closeAll();
+            System.out.println("✅ Server stopped");
+        });
+
+        server.start();
+        System.out.println("✅ Habit Tracker API listening on port " + server.getAddress().getPort());
+    }
+}
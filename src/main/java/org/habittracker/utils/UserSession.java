@@ -0,0 +1,46 @@
+package org.habittracker.utils;
+
+import org.habittracker.models.Habit;
+import org.habittracker.models.User;
+
+import java.util.List;
+
+// The logged-in user, and data loaded for them that screens share instead of fetching again
+public final class UserSession {
+    private static volatile User currentUser;
+    // Habits as last loaded by the dashboard; null until loaded
+    private static volatile List<Habit> habits;
+
+    private UserSession() {
+    }
+
+    public static void start(User user) {
+        currentUser = user;
+        habits = null;
+    }
+
+    public static void clear() {
+        currentUser = null;
+        habits = null;
+    }
+
+    public static List<Habit> getHabits() {
+        return habits;
+    }
+
+    public static void setHabits(List<Habit> loaded) {
+        habits = loaded;
+    }
+
+    public static User getCurrentUser() {
+        return currentUser;
+    }
+
+    public static int getUserId() {
+        User user = currentUser;
+        if (user == null) {
+            throw new IllegalStateException("No user is logged in");
+        }
+        return user.getId();
+    }
+}
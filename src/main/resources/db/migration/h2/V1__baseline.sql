@@ -0,0 +1,20 @@
+-- Tables as the app first created them
+CREATE TABLE IF NOT EXISTS habit (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    name VARCHAR(255) NOT NULL,
+    google_event_id VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS habit_completion (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    habit_id INT NOT NULL,
+    completion_date DATE NOT NULL,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    FOREIGN KEY (habit_id) REFERENCES habit(id)
+);
+
+CREATE TABLE IF NOT EXISTS users (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL
+);
@@ -0,0 +1,11 @@
+-- One row per habit and day, which the completion upserts rely on.
+-- Older databases may hold duplicate days: keep the latest row of each.
+DELETE FROM habit_completion WHERE id NOT IN (
+    SELECT keep_id FROM (
+        SELECT MAX(id) AS keep_id FROM habit_completion
+        GROUP BY habit_id, completion_date
+    ) keepers
+);
+
+ALTER TABLE habit_completion ADD CONSTRAINT IF NOT EXISTS uq_habit_completion_day
+    UNIQUE (habit_id, completion_date);
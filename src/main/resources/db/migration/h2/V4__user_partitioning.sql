@@ -0,0 +1,6 @@
+-- Habits and completions belong to a user; reads are range scans over one user's rows
+ALTER TABLE habit ADD COLUMN IF NOT EXISTS user_id INT;
+ALTER TABLE habit_completion ADD COLUMN IF NOT EXISTS user_id INT;
+
+CREATE INDEX IF NOT EXISTS idx_habit_user ON habit (user_id);
+CREATE INDEX IF NOT EXISTS idx_completion_user_day ON habit_completion (user_id, completion_date);
@@ -0,0 +1,2 @@
+-- Nothing to repair: H2 databases always got their users table from V1, with id and a unique username.
+-- The MySQL script of this version fixes users tables that were created by hand.
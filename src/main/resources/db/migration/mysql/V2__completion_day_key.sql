@@ -0,0 +1,18 @@
+-- One row per habit and day, which the completion upserts rely on.
+-- Older databases may hold duplicate days: keep the latest row of each.
+DELETE FROM habit_completion WHERE id NOT IN (
+    SELECT keep_id FROM (
+        SELECT MAX(id) AS keep_id FROM habit_completion
+        GROUP BY habit_id, completion_date
+    ) keepers
+);
+
+-- MySQL has no ADD CONSTRAINT IF NOT EXISTS, so the DDL is chosen at run time
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'habit_completion'
+                 AND index_name = 'uq_habit_completion_day') = 0,
+              'ALTER TABLE habit_completion ADD CONSTRAINT uq_habit_completion_day UNIQUE (habit_id, completion_date)',
+              'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
@@ -0,0 +1,10 @@
+-- Google Calendar operations waiting to be sent by CalendarSyncWorker
+CREATE TABLE IF NOT EXISTS calendar_outbox (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    habit_id INT NOT NULL,
+    operation VARCHAR(16) NOT NULL,
+    event_id VARCHAR(255),
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(1000)
+);
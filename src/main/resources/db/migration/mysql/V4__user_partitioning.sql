@@ -0,0 +1,33 @@
+-- Habits and completions belong to a user; reads are range scans over one user's rows
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns
+               WHERE table_schema = DATABASE() AND table_name = 'habit' AND column_name = 'user_id') = 0,
+              'ALTER TABLE habit ADD COLUMN user_id INT',
+              'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns
+               WHERE table_schema = DATABASE() AND table_name = 'habit_completion' AND column_name = 'user_id') = 0,
+              'ALTER TABLE habit_completion ADD COLUMN user_id INT',
+              'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'habit' AND index_name = 'idx_habit_user') = 0,
+              'CREATE INDEX idx_habit_user ON habit (user_id)',
+              'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'habit_completion'
+                 AND index_name = 'idx_completion_user_day') = 0,
+              'CREATE INDEX idx_completion_user_day ON habit_completion (user_id, completion_date)',
+              'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
@@ -0,0 +1,32 @@
+-- Completed counts per user and day, and per habit and month, kept up to date by
+-- CompletionWriteBuffer so analytics ranges read a few rollup rows instead of raw completions
+CREATE TABLE IF NOT EXISTS completion_daily_rollup (
+    user_id INT NOT NULL,
+    rollup_date DATE NOT NULL,
+    completed_count INT NOT NULL,
+    PRIMARY KEY (user_id, rollup_date)
+);
+
+CREATE TABLE IF NOT EXISTS completion_monthly_rollup (
+    habit_id INT NOT NULL,
+    month_start DATE NOT NULL,
+    user_id INT NOT NULL,
+    completed_count INT NOT NULL,
+    PRIMARY KEY (habit_id, month_start),
+    INDEX idx_monthly_rollup_user_month (user_id, month_start)
+);
+
+-- Backfill from existing completions; rows without a user are rolled up once they are adopted
+DELETE FROM completion_daily_rollup;
+INSERT INTO completion_daily_rollup (user_id, rollup_date, completed_count)
+SELECT user_id, completion_date, COUNT(*)
+FROM habit_completion
+WHERE user_id IS NOT NULL AND completed = TRUE
+GROUP BY user_id, completion_date;
+
+DELETE FROM completion_monthly_rollup;
+INSERT INTO completion_monthly_rollup (habit_id, month_start, user_id, completed_count)
+SELECT habit_id, DATE_SUB(completion_date, INTERVAL DAYOFMONTH(completion_date) - 1 DAY), MAX(user_id), COUNT(*)
+FROM habit_completion
+WHERE user_id IS NOT NULL AND completed = TRUE
+GROUP BY habit_id, DATE_SUB(completion_date, INTERVAL DAYOFMONTH(completion_date) - 1 DAY);
@@ -0,0 +1,23 @@
+-- users tables created by hand before V1 may lack what registration and login rely on:
+-- an id column, and a unique index on username (saveUser inserts and lets the index reject duplicates).
+-- Existing duplicate usernames make the index creation fail; they have to be merged by hand first.
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns
+               WHERE table_schema = DATABASE() AND table_name = 'users' AND column_name = 'id') = 0,
+              'ALTER TABLE users ADD COLUMN id INT NOT NULL AUTO_INCREMENT UNIQUE FIRST',
+              'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- Only a unique index on username alone counts; one over (username, something) allows duplicate names
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics s
+               WHERE s.table_schema = DATABASE() AND s.table_name = 'users' AND s.column_name = 'username'
+                 AND s.non_unique = 0 AND s.seq_in_index = 1
+                 AND NOT EXISTS (SELECT 1 FROM information_schema.statistics t
+                                 WHERE t.table_schema = s.table_schema AND t.table_name = s.table_name
+                                   AND t.index_name = s.index_name AND t.seq_in_index = 2)) = 0,
+              'CREATE UNIQUE INDEX uq_users_username ON users (username)',
+              'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
@@ -0,0 +1,196 @@
+package org.habittracker.db;
+
+import org.habittracker.models.HabitStreak;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompletionIndexTest {
+    private static final int HABIT = 1;
+    // Epoch day 19200 (2022-07-27) starts a bitset word, so runs around it cross a word boundary
+    private static final LocalDate WORD_START = LocalDate.ofEpochDay(64 * 300);
+
+    private final CompletionIndex index = new CompletionIndex();
+
+    private void complete(LocalDate from, LocalDate to, boolean completed) {
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            index.setCompleted(HABIT, day, completed);
+        }
+    }
+
+    @Test
+    void rangeQueriesAcrossAWordBoundary() {
+        index.putHabit(HABIT, "Read");
+        index.putHabit(2, "Run");
+        complete(WORD_START.minusDays(10), WORD_START.plusDays(10), true);
+        index.setCompleted(2, WORD_START, true);
+
+        assertEquals(Map.of("Read", 21, "Run", 1),
+                index.getHabitCompletionCounts(WORD_START.minusDays(30), WORD_START.plusDays(30)));
+        assertEquals(Map.of("Read", 11, "Run", 1), index.getHabitCompletionCounts(WORD_START, WORD_START.plusDays(63)));
+        assertEquals(Map.of("Read", 2), index.getHabitCompletionCounts(WORD_START.minusDays(2), WORD_START.minusDays(1)));
+
+        Map<LocalDate, Integer> daily = index.getDailyCompletionCounts(WORD_START.minusDays(1), WORD_START.plusDays(1));
+        assertEquals(Map.of(WORD_START.minusDays(1), 1, WORD_START, 2, WORD_START.plusDays(1), 1), daily);
+        assertEquals(Map.of(HABIT, true, 2, true), index.getCompletionStatusForDay(WORD_START));
+        assertEquals(21, index.getCompletionStatusForRange(WORD_START.minusDays(64), WORD_START.plusDays(64)).size());
+    }
+
+    @Test
+    void growingBackwardsKeepsLaterDays() {
+        index.putHabit(HABIT, "Read");
+        index.setCompleted(HABIT, WORD_START, true);
+        // Moves the bitset's base back by several words
+        complete(WORD_START.minusDays(300), WORD_START.minusDays(1), true);
+
+        assertTrue(index.isCompleted(HABIT, WORD_START));
+        assertFalse(index.isCompleted(HABIT, WORD_START.minusDays(301)));
+        assertFalse(index.isCompleted(HABIT, WORD_START.plusDays(1)));
+        assertEquals(Map.of("Read", 301), index.getHabitCompletionCounts(WORD_START.minusYears(2), WORD_START.plusYears(2)));
+    }
+
+    @Test
+    void clearedDaysAndRemovedHabitsDropOut() {
+        index.putHabit(HABIT, "Read");
+        complete(WORD_START, WORD_START.plusDays(2), true);
+        index.setCompleted(HABIT, WORD_START.plusDays(1), false);
+
+        assertEquals(Map.of("Read", 2), index.getHabitCompletionCounts(WORD_START, WORD_START.plusDays(2)));
+        index.removeHabit(HABIT);
+        assertTrue(index.getHabitCompletionCounts(WORD_START, WORD_START.plusDays(2)).isEmpty());
+        assertTrue(index.getCompletionStatusForDay(WORD_START).isEmpty());
+    }
+
+    @Test
+    void randomTogglesMatchAPlainSet() {
+        index.putHabit(HABIT, "Read");
+        Random random = new Random(42);
+        TreeSet<Long> completed = new TreeSet<>();
+        long first = WORD_START.toEpochDay() - 200;
+        for (int i = 0; i < 5000; i++) {
+            long day = first + random.nextInt(400);
+            boolean done = random.nextInt(3) > 0;
+            index.setCompleted(HABIT, LocalDate.ofEpochDay(day), done);
+            if (done) completed.add(day);
+            else completed.remove(day);
+
+            if (i % 50 == 0) {
+                long from = first - 10 + random.nextInt(420);
+                long to = from + random.nextInt(150);
+                int expected = completed.subSet(from, true, to, true).size();
+                Map<String, Integer> counts = index.getHabitCompletionCounts(LocalDate.ofEpochDay(from), LocalDate.ofEpochDay(to));
+                assertEquals(expected, counts.getOrDefault("Read", 0), "count after toggle " + i);
+                assertEquals(completed.contains(from), index.isCompleted(HABIT, LocalDate.ofEpochDay(from)));
+            }
+        }
+    }
+
+    @Test
+    void runAcrossAWordBoundary() {
+        complete(WORD_START.minusDays(10), WORD_START.plusDays(10), true);
+
+        HabitStreak streak = index.getStreak(HABIT, WORD_START.plusDays(10));
+        assertEquals(21, streak.getCurrentStreak());
+        assertEquals(21, streak.getLongestStreak());
+    }
+
+    @Test
+    void runSpanningSeveralWords() {
+        complete(WORD_START.minusDays(70), WORD_START.plusDays(129), true);
+
+        HabitStreak streak = index.getStreak(HABIT, WORD_START.plusDays(129));
+        assertEquals(200, streak.getCurrentStreak());
+        assertEquals(200, streak.getLongestStreak());
+    }
+
+    @Test
+    void gapSplitsTheRun() {
+        complete(WORD_START.minusDays(10), WORD_START.plusDays(10), true);
+        index.setCompleted(HABIT, WORD_START, false);
+
+        HabitStreak streak = index.getStreak(HABIT, WORD_START.plusDays(10));
+        assertEquals(10, streak.getCurrentStreak());
+        assertEquals(10, streak.getLongestStreak());
+
+        // Filling the gap joins both halves again
+        index.setCompleted(HABIT, WORD_START, true);
+        assertEquals(21, index.getStreak(HABIT, WORD_START.plusDays(10)).getLongestStreak());
+    }
+
+    @Test
+    void currentStreakSurvivesUntilTheEndOfToday() {
+        complete(WORD_START.minusDays(5), WORD_START.minusDays(1), true);
+
+        assertEquals(5, index.getStreak(HABIT, WORD_START).getCurrentStreak());
+        assertEquals(0, index.getStreak(HABIT, WORD_START.plusDays(1)).getCurrentStreak());
+        assertEquals(5, index.getStreak(HABIT, WORD_START.plusDays(1)).getLongestStreak());
+    }
+
+    @Test
+    void runsSurviveGrowingBackwards() {
+        index.setCompleted(HABIT, WORD_START, true);
+        complete(WORD_START.minusDays(300), WORD_START.minusDays(1), true);
+
+        assertEquals(301, index.getStreak(HABIT, WORD_START).getLongestStreak());
+    }
+
+    @Test
+    void randomTogglesMatchAPlainScan() {
+        Random random = new Random(42);
+        TreeSet<Long> completed = new TreeSet<>();
+        long first = WORD_START.toEpochDay() - 200;
+        for (int i = 0; i < 5000; i++) {
+            long day = first + random.nextInt(400);
+            boolean done = random.nextInt(3) > 0;
+            index.setCompleted(HABIT, LocalDate.ofEpochDay(day), done);
+            if (done) completed.add(day);
+            else completed.remove(day);
+
+            if (i % 50 == 0) {
+                long today = first + random.nextInt(400);
+                HabitStreak streak = index.getStreak(HABIT, LocalDate.ofEpochDay(today));
+                assertEquals(longestRun(completed), streak.getLongestStreak(), "longest after toggle " + i);
+                assertEquals(currentRun(completed, today), streak.getCurrentStreak(), "current after toggle " + i);
+            }
+        }
+    }
+
+    @Test
+    void distantDatesAreRefused() {
+        index.setCompleted(HABIT, WORD_START, true);
+
+        assertThrows(IllegalArgumentException.class, () -> index.setCompleted(HABIT, LocalDate.of(9999, 1, 1), true));
+        assertThrows(IllegalArgumentException.class, () -> index.setCompleted(HABIT, LocalDate.of(1, 1, 1), true));
+        assertEquals(1, index.getStreak(HABIT, WORD_START).getLongestStreak());
+    }
+
+    private static int longestRun(TreeSet<Long> days) {
+        int longest = 0;
+        int run = 0;
+        long previous = Long.MIN_VALUE;
+        for (long day : days) {
+            run = day == previous + 1 ? run + 1 : 1;
+            longest = Math.max(longest, run);
+            previous = day;
+        }
+        return longest;
+    }
+
+    private static int currentRun(TreeSet<Long> days, long today) {
+        long day = days.contains(today) ? today : today - 1;
+        int run = 0;
+        while (days.contains(day)) {
+            run++;
+            day--;
+        }
+        return run;
+    }
+}
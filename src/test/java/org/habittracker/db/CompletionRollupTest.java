@@ -0,0 +1,166 @@
+package org.habittracker.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs on the in-memory H2 database the build configures; each test works in its own user's rows
+class CompletionRollupTest {
+    private static final AtomicInteger NEXT_USER = new AtomicInteger(1_000);
+    private static final String UPSERT = """
+            MERGE INTO habit_completion (user_id, habit_id, completion_date, completed)
+            KEY (habit_id, completion_date) VALUES (?, ?, ?, ?)
+            """;
+
+    private Connection conn;
+    private int userId;
+    // What was written, per habit name: the completed days
+    private final Map<String, TreeMap<LocalDate, Boolean>> written = new HashMap<>();
+    private final Map<String, Integer> habitIds = new HashMap<>();
+
+    @BeforeAll
+    static void migrate() throws SQLException {
+        SchemaMigrator.migrate();
+    }
+
+    @BeforeEach
+    void connect() throws SQLException {
+        conn = DatabaseConnection.getConnection();
+        userId = NEXT_USER.incrementAndGet();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void habitCountsOverRangesSpanningMonths() throws SQLException {
+        Random random = new Random(7);
+        for (String habit : List.of("Read", "Run")) {
+            for (LocalDate day = LocalDate.of(2024, 1, 15); day.isBefore(LocalDate.of(2024, 4, 21)); day = day.plusDays(1)) {
+                if (random.nextBoolean()) write(habit, day, true);
+            }
+        }
+
+        assertCounts(LocalDate.of(2024, 1, 20), LocalDate.of(2024, 3, 10));   // partial, whole, partial
+        assertCounts(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29));    // exactly one leap-year February
+        assertCounts(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 31));    // whole months only
+        assertCounts(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 2, 1));    // two partial months, no whole one
+        assertCounts(LocalDate.of(2024, 3, 5), LocalDate.of(2024, 3, 25));    // inside one month
+        assertCounts(LocalDate.of(2023, 12, 1), LocalDate.of(2024, 12, 31));  // wider than the data
+    }
+
+    @Test
+    void undoneCompletionsAreRecounted() throws SQLException {
+        write("Read", LocalDate.of(2024, 5, 10), true);
+        write("Read", LocalDate.of(2024, 5, 11), true);
+        write("Read", LocalDate.of(2024, 5, 10), false);
+
+        assertCounts(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 6, 30));
+        assertEquals(Map.of(LocalDate.of(2024, 5, 11), 1),
+                CompletionRollup.dailyCounts(conn, userId, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 31)));
+    }
+
+    @Test
+    void rebuildMatchesTheIncrementalRollups() throws SQLException {
+        for (int i = 0; i < 90; i += 3) {
+            write("Read", LocalDate.of(2024, 6, 1).plusDays(i), true);
+            write("Run", LocalDate.of(2024, 6, 1).plusDays(i + 1), true);
+        }
+        LocalDate start = LocalDate.of(2024, 5, 20);
+        LocalDate end = LocalDate.of(2024, 9, 10);
+        Map<String, Integer> incremental = CompletionRollup.habitCounts(conn, userId, start, end);
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM completion_monthly_rollup WHERE user_id = " + userId);
+        }
+        CompletionRollup.rebuild(conn, userId);
+
+        assertEquals(incremental, CompletionRollup.habitCounts(conn, userId, start, end));
+        assertCounts(start, end);
+    }
+
+    @Test
+    void removedHabitLeavesTheRollups() throws SQLException {
+        write("Read", LocalDate.of(2024, 7, 1), true);
+        write("Run", LocalDate.of(2024, 7, 1), true);
+        write("Run", LocalDate.of(2024, 8, 1), true);
+
+        int runId = habitIds.get("Run");
+        CompletionRollup.removeHabit(conn, userId, runId);
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM habit_completion WHERE habit_id = ?")) {
+            stmt.setInt(1, runId);
+            stmt.executeUpdate();
+        }
+        written.remove("Run");
+
+        assertCounts(LocalDate.of(2024, 6, 15), LocalDate.of(2024, 8, 15));
+        assertEquals(Map.of(LocalDate.of(2024, 7, 1), 1),
+                CompletionRollup.dailyCounts(conn, userId, LocalDate.of(2024, 6, 1), LocalDate.of(2024, 8, 31)));
+    }
+
+    // Writes one completion the way CompletionWriteBuffer does: upsert, then recount in the same transaction
+    private void write(String habit, LocalDate date, boolean completed) throws SQLException {
+        int habitId = habitIds.computeIfAbsent(habit, this::insertHabit);
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, habitId);
+            stmt.setDate(3, java.sql.Date.valueOf(date));
+            stmt.setBoolean(4, completed);
+            stmt.executeUpdate();
+            CompletionRollup.refresh(conn, List.of(new CompletionWriteBuffer.Key(userId, habitId, date)));
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        written.computeIfAbsent(habit, h -> new TreeMap<>()).put(date, completed);
+    }
+
+    private int insertHabit(String name) {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO habit (name, user_id) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, name);
+            stmt.setInt(2, userId);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                assertTrue(keys.next());
+                return keys.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void assertCounts(LocalDate start, LocalDate end) throws SQLException {
+        Map<String, Integer> perHabit = new HashMap<>();
+        Map<LocalDate, Integer> perDay = new HashMap<>();
+        written.forEach((habit, days) -> days.subMap(start, true, end, true).forEach((day, completed) -> {
+            if (!completed) return;
+            perHabit.merge(habit, 1, Integer::sum);
+            perDay.merge(day, 1, Integer::sum);
+        }));
+
+        String range = start + ".." + end;
+        assertEquals(perHabit, CompletionRollup.habitCounts(conn, userId, start, end), "habit counts for " + range);
+        assertEquals(perDay, CompletionRollup.dailyCounts(conn, userId, start, end), "daily counts for " + range);
+    }
+}
@@ -0,0 +1,169 @@
+package org.habittracker.db;
+
+import org.habittracker.models.Habit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalHabitStoreTest {
+    // Record layout, see LocalHabitStore
+    private static final int HEADER_SIZE = 16;
+    private static final int HABIT_SIZE = 272;
+    private static final int COMPLETION_SIZE = 16;
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopeningReplaysTheLog() throws IOException {
+        Path file = dir.resolve("habits.htdl");
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            Habit read = add(store, "Read");
+            Habit run = add(store, "Run");
+            Habit stretch = add(store, "Stretch");
+            store.updateHabit(run, "Run 5k");
+            store.deleteHabit(stretch);
+            store.markCompleted(read, DAY, true);
+            store.markCompleted(read, DAY.plusDays(1), true);
+            store.markCompleted(run, DAY, true);
+            store.markCompleted(run, DAY, false);
+        }
+
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            assertEquals(List.of("Read", "Run 5k"), store.getAllHabits().stream().map(Habit::getName).toList());
+            assertEquals(Map.of("Read", 2), store.getHabitCompletionCounts(DAY, DAY.plusDays(1)));
+            assertEquals("Run 5k", store.findHabit(2).getName());
+            assertNull(store.findHabit(3));
+            // Ids of deleted habits are not handed out again
+            assertEquals(4, add(store, "Meditate").getId());
+        }
+    }
+
+    @Test
+    void tornTailIsDroppedAndOverwritten() throws IOException {
+        Path file = dir.resolve("habits.htdl");
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            Habit read = add(store, "Read");
+            for (int i = 0; i < 3; i++) store.markCompleted(read, DAY.plusDays(i), true);
+        }
+        // The last completion was only half written when the app died
+        int lastRecord = HEADER_SIZE + HABIT_SIZE + 2 * COMPLETION_SIZE;
+        overwrite(file, lastRecord + COMPLETION_SIZE / 2, new byte[COMPLETION_SIZE / 2]);
+
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            assertEquals(Map.of("Read", 2), store.getHabitCompletionCounts(DAY, DAY.plusDays(2)));
+            store.markCompleted(store.getAllHabits().get(0), DAY.plusDays(5), true);
+        }
+
+        // The new record took the torn one's place and replays like any other
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            assertEquals(Map.of("Read", 3), store.getHabitCompletionCounts(DAY, DAY.plusDays(5)));
+            assertFalse(store.getCompletionStatusForDay(DAY.plusDays(2)).containsKey(1));
+        }
+    }
+
+    @Test
+    void replayStopsAtACorruptedRecord() throws IOException {
+        Path file = dir.resolve("habits.htdl");
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            Habit read = add(store, "Read");
+            for (int i = 0; i < 4; i++) store.markCompleted(read, DAY.plusDays(i), true);
+        }
+        // Flip a bit in the day of the second completion, so its checksum no longer matches
+        int second = HEADER_SIZE + HABIT_SIZE + COMPLETION_SIZE;
+        byte[] day = read(file, second + 8, 1);
+        overwrite(file, second + 8, new byte[]{(byte) (day[0] ^ 1)});
+
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            // Everything from the bad record on is lost, never misread
+            assertEquals(Map.of("Read", 1), store.getHabitCompletionCounts(DAY, DAY.plusDays(10)));
+        }
+    }
+
+    @Test
+    void compactionKeepsTheStateAndShrinksTheFile() throws IOException {
+        Path file = dir.resolve("habits.htdl");
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            Habit read = add(store, "Read");
+            Habit run = add(store, "Run");
+            for (int i = 0; i < 100; i++) store.markCompleted(run, DAY.minusDays(i), i % 3 != 0);
+            // Over a megabyte of toggles of the same day triggers compaction while open
+            for (int i = 0; i < 70_000; i++) store.markCompleted(read, DAY, i % 2 == 0);
+            store.markCompleted(read, DAY.plusDays(1), true);
+        }
+        assertTrue(Files.size(file) < 1024 * 1024, "file was not compacted: " + Files.size(file) + " bytes");
+
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            assertEquals(Map.of("Read", 1, "Run", 66), store.getHabitCompletionCounts(DAY.minusDays(99), DAY.plusDays(1)));
+            assertFalse(store.getCompletionStatusForDay(DAY).containsKey(1));
+            // Appends after compaction land behind the compacted records
+            store.markCompleted(store.getAllHabits().get(0), DAY.plusDays(2), true);
+            assertEquals(3, add(store, "Stretch").getId());
+        }
+
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            assertEquals(Map.of("Read", 2, "Run", 66), store.getHabitCompletionCounts(DAY.minusDays(99), DAY.plusDays(2)));
+            assertEquals(3, store.getAllHabits().size());
+        }
+    }
+
+    @Test
+    void leftoverCompactionFileIsIgnored() throws IOException {
+        Path file = dir.resolve("habits.htdl");
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            store.markCompleted(add(store, "Read"), DAY, true);
+        }
+        Path leftover = dir.resolve("habits.htdl.compact");
+        Files.write(leftover, new byte[100]);
+
+        try (LocalHabitStore store = LocalHabitStore.open(file)) {
+            assertEquals(Map.of("Read", 1), store.getHabitCompletionCounts(DAY, DAY));
+        }
+        assertFalse(Files.exists(leftover));
+    }
+
+    @Test
+    void otherFilesAreRefused() throws IOException {
+        Path file = dir.resolve("notes.txt");
+        Files.writeString(file, "not a habit log");
+
+        assertThrows(IOException.class, () -> LocalHabitStore.open(file));
+    }
+
+    private static Habit add(LocalHabitStore store, String name) {
+        Habit habit = new Habit(name);
+        assertTrue(store.addHabit(habit));
+        return habit;
+    }
+
+    private static byte[] read(Path file, int pos, int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            channel.read(buffer, pos);
+            return buffer.array();
+        }
+    }
+
+    private static void overwrite(Path file, int pos, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), pos);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.habittracker.services;
+
+import org.habittracker.services.LoginRateLimiter.Decision;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Every test drives the limiter's clock by hand, so nothing here depends on real time
+class LoginRateLimiterTest {
+    private final AtomicLong clock = new AtomicLong(TimeUnit.DAYS.toNanos(3));
+
+    private LoginRateLimiter limiter(int userPerMinute, int userBurst, int globalPerSecond, int globalBurst,
+                                     int maxFailures) {
+        return new LoginRateLimiter(1024, userPerMinute, userBurst, globalPerSecond, globalBurst,
+                maxFailures, 60_000, 120_000, clock::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    void userBurstThenOneAttemptPerInterval() {
+        // One token every 10 seconds, up to 3 at once
+        LoginRateLimiter limiter = limiter(6, 3, 1000, 1000, 100);
+
+        for (int i = 0; i < 3; i++) assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("alice"));
+
+        advanceSeconds(9);
+        assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("alice"));
+        advanceSeconds(1);
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("alice"));
+
+        // A long pause refills the bucket, but never beyond the burst
+        advanceSeconds(3600);
+        for (int i = 0; i < 3; i++) assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    void usersHaveTheirOwnBucketsRegardlessOfCase() {
+        LoginRateLimiter limiter = limiter(6, 2, 1000, 1000, 100);
+
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("ALICE"));
+        assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("Alice"));
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("bob"));
+    }
+
+    @Test
+    void globalBucketLimitsAllUsersTogether() {
+        // One attempt per second across all names, up to 2 at once
+        LoginRateLimiter limiter = limiter(60, 10, 1, 2, 100);
+
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("bob"));
+        assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("carol"));
+
+        advanceSeconds(1);
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("carol"));
+        assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("dave"));
+    }
+
+    @Test
+    void globalRefusalLeavesTheUserTokens() {
+        // User: 2 attempts, then one every 30 seconds; global: one per second
+        LoginRateLimiter limiter = limiter(2, 2, 1, 1, 100);
+
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("bob"));
+        for (int i = 0; i < 5; i++) assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("alice"));
+
+        // Alice's own burst is still there once the global bucket has refilled
+        advanceSeconds(1);
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        advanceSeconds(1);
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        advanceSeconds(1);
+        assertEquals(Decision.RATE_LIMITED, limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    void failuresLockTheNameUntilTheLockoutEnds() {
+        LoginRateLimiter limiter = limiter(600, 100, 1000, 1000, 3);
+
+        for (int i = 0; i < 2; i++) limiter.recordFailure("alice");
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        limiter.recordFailure("alice");
+        assertEquals(Decision.LOCKED_OUT, limiter.tryAcquire("alice"));
+        assertEquals(Decision.LOCKED_OUT, limiter.tryAcquire("Alice"));
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("bob"));
+
+        advanceSeconds(119);
+        assertEquals(Decision.LOCKED_OUT, limiter.tryAcquire("alice"));
+        advanceSeconds(1);
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    void namesSharingASlotDoNotLockEachOtherOut() {
+        // A single slot, so every name collides with every other
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 600, 100, 1000, 1000, 3, 60_000, 120_000, clock::get);
+
+        for (int i = 0; i < 3; i++) limiter.recordFailure("mallory");
+        assertEquals(Decision.LOCKED_OUT, limiter.tryAcquire("mallory"));
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+
+        // Spraying failures over many names locks none of the others either
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 3; j++) limiter.recordFailure("user" + i);
+        }
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+
+        // Nor does another name's success clear a count
+        limiter.recordFailure("bob");
+        limiter.recordFailure("bob");
+        limiter.recordSuccess("carol");
+        limiter.recordFailure("bob");
+        assertEquals(Decision.LOCKED_OUT, limiter.tryAcquire("bob"));
+    }
+
+    @Test
+    void successClearsTheFailureCount() {
+        LoginRateLimiter limiter = limiter(600, 100, 1000, 1000, 3);
+
+        limiter.recordFailure("alice");
+        limiter.recordFailure("alice");
+        limiter.recordSuccess("alice");
+        limiter.recordFailure("alice");
+        limiter.recordFailure("alice");
+
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    void previousWindowCountsForTheShareStillInRange() {
+        LoginRateLimiter limiter = limiter(600, 100, 1000, 1000, 3);
+
+        // Two failures late in one 60 second window
+        advanceSeconds(50);
+        limiter.recordFailure("alice");
+        limiter.recordFailure("alice");
+
+        // 10 seconds into the next window they still count as 2 * 50/60, rounded down to 1
+        advanceSeconds(20);
+        limiter.recordFailure("alice");
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+        limiter.recordFailure("alice");
+        assertEquals(Decision.LOCKED_OUT, limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    void failuresExpireAfterTwoWindows() {
+        LoginRateLimiter limiter = limiter(600, 100, 1000, 1000, 3);
+
+        limiter.recordFailure("alice");
+        limiter.recordFailure("alice");
+        advanceSeconds(130);
+        limiter.recordFailure("alice");
+        limiter.recordFailure("alice");
+
+        assertEquals(Decision.ALLOWED, limiter.tryAcquire("alice"));
+    }
+}
@@ -0,0 +1,95 @@
+package org.habittracker.services;
+
+import org.habittracker.db.UserRepository;
+import org.habittracker.models.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Low iteration counts keep the tests fast; the cost does not change what is being checked
+class PasswordHasherTest {
+    private final PasswordHasher hasher = new PasswordHasher(1_000);
+
+    @Test
+    void hashesVerifyAndAreSalted() {
+        String first = hasher.hash("correct horse");
+        String second = hasher.hash("correct horse");
+
+        assertTrue(first.startsWith("pbkdf2-sha256$1000$"));
+        assertNotEquals(first, second);
+        assertTrue(hasher.verify("correct horse", first));
+        assertTrue(hasher.verify("correct horse", second));
+        assertFalse(hasher.verify("correct horsE", first));
+        assertFalse(hasher.needsRehash(first));
+    }
+
+    @Test
+    void legacyPlainTextPasswordsVerifyAndNeedRehash() {
+        assertTrue(hasher.verify("hunter2", "hunter2"));
+        assertFalse(hasher.verify("hunter3", "hunter2"));
+        assertFalse(hasher.verify("hunter2", null));
+        assertTrue(hasher.needsRehash("hunter2"));
+    }
+
+    @Test
+    void hashesOfAnotherCostStillVerifyButNeedRehash() {
+        String old = new PasswordHasher(500).hash("s3cret");
+
+        assertTrue(hasher.verify("s3cret", old));
+        assertTrue(hasher.needsRehash(old));
+
+        String rehashed = hasher.hash("s3cret");
+        assertTrue(hasher.verify("s3cret", rehashed));
+        assertFalse(hasher.needsRehash(rehashed));
+        assertTrue(new PasswordHasher(500).verify("s3cret", rehashed));
+    }
+
+    @Test
+    void malformedHashesNeverVerify() {
+        String valid = hasher.hash("s3cret");
+        String[] parts = valid.split("\\$");
+
+        assertFalse(hasher.verify("s3cret", parts[0] + "$" + parts[1] + "$" + parts[2]));
+        assertFalse(hasher.verify("s3cret", parts[0] + "$" + parts[1] + "$not base64!$" + parts[3]));
+        assertFalse(hasher.verify("s3cret", parts[0] + "$" + parts[1] + "$" + parts[2] + "$" + parts[3].substring(1)));
+        assertTrue(hasher.needsRehash(parts[0] + "$" + parts[1] + "$" + parts[2]));
+    }
+
+    // End to end on the test database: a successful login replaces the stored value with a current hash
+    @Test
+    void loginUpgradesLegacyAndOutdatedHashes() throws InterruptedException {
+        UserRepository users = new UserRepository();
+        User user = users.saveUser(new User("legacy-" + System.nanoTime(), "plain-text"));
+        assertNotNull(user);
+        LoginRateLimiter limiter = new LoginRateLimiter(64, 60, 10, 100, 100, 5, 60_000, 60_000, System::nanoTime);
+
+        AuthService auth = new AuthService(new PasswordHasher(500), limiter);
+        assertEquals(AuthService.LoginResult.SUCCESS, auth.authenticate(user.getUsername(), "plain-text"));
+        String upgraded = awaitStoredPassword(users, user.getUsername(), "pbkdf2-sha256$500$");
+
+        // Raising the cost upgrades the hash again on the next login
+        AuthService stronger = new AuthService(hasher, limiter);
+        assertEquals(AuthService.LoginResult.SUCCESS, stronger.authenticate(user.getUsername(), "plain-text"));
+        String rehashed = awaitStoredPassword(users, user.getUsername(), "pbkdf2-sha256$1000$");
+        assertNotEquals(upgraded, rehashed);
+
+        assertEquals(AuthService.LoginResult.INVALID_CREDENTIALS,
+                stronger.authenticate(user.getUsername(), "plain-text!"));
+        assertEquals(AuthService.LoginResult.SUCCESS, stronger.authenticate(user.getUsername(), "plain-text"));
+    }
+
+    // The upgrade is written in the background after the login returns
+    private static String awaitStoredPassword(UserRepository users, String username, String prefix)
+            throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            String stored = users.findUserByUsername(username).getPassword();
+            if (stored.startsWith(prefix)) return stored;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Password of " + username + " was not rehashed to " + prefix);
+    }
+}